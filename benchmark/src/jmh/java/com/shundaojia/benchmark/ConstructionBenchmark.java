@@ -0,0 +1,89 @@
+package com.shundaojia.benchmark;
+
+import com.shundaojia.rxcommand.RxCommand;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.CompositeDisposable;
+
+/**
+ * The cost of creating a command, alone and with all its outputs observed as a bound screen
+ * would do. Run with the gc profiler to see the allocations per command; `retained` reports
+ * the heap kept alive by each command in its `retainedBytes` counter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConstructionBenchmark {
+
+    private static final int RETAINED_COMMANDS = 10000;
+
+    private final Observable<Boolean> enabled = Observable.just(true);
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long retainedBytes;
+    }
+
+    @Setup
+    public void setup() {
+        MainThread.useTrampoline();
+    }
+
+    @Benchmark
+    public RxCommand<Integer> construct() {
+        return RxCommand.create(o -> Observable.just(1));
+    }
+
+    @Benchmark
+    public RxCommand<Integer> construct_withEnabled() {
+        return RxCommand.create(enabled, o -> Observable.just(1));
+    }
+
+    @Benchmark
+    public CompositeDisposable construct_observed() {
+        RxCommand<Integer> command = RxCommand.create(o -> Observable.just(1));
+        CompositeDisposable disposables = new CompositeDisposable();
+        disposables.add(command.switchToLatest().subscribe());
+        disposables.add(command.errors().subscribe());
+        disposables.add(command.executing().subscribe());
+        disposables.add(command.enabled().subscribe());
+        disposables.dispose();
+        return disposables;
+    }
+
+    /**
+     * The heap retained by one command, measured over {@value #RETAINED_COMMANDS} commands.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object[] retained(Counters counters) {
+        long before = usedHeap();
+        Object[] commands = new Object[RETAINED_COMMANDS];
+        for (int i = 0; i < commands.length; i++) {
+            commands[i] = RxCommand.create(o -> Observable.just(1));
+        }
+        long after = usedHeap();
+        counters.retainedBytes = (after - before) / RETAINED_COMMANDS;
+        return commands;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
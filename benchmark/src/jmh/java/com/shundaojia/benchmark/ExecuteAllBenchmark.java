@@ -0,0 +1,67 @@
+package com.shundaojia.benchmark;
+
+import com.shundaojia.rxcommand.RxCommand;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+
+/**
+ * Throughput of running `size` inputs through {@link RxCommand#executeAll(Iterable, int, boolean)},
+ * against calling {@link RxCommand#execute(Object)} for each of them. Every operation runs all
+ * the inputs and consumes all their values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExecuteAllBenchmark {
+
+    @Param({"100", "1000"})
+    int size;
+
+    private final List<Integer> inputs = new ArrayList<>();
+
+    private RxCommand<Integer> command;
+
+    @Setup
+    public void setup() {
+        MainThread.useTrampoline();
+        for (int i = 0; i < size; i++) {
+            inputs.add(i);
+        }
+        command = RxCommand.builder((Object o) -> Observable.just((Integer) o))
+                .allowsConcurrentExecution(true)
+                .build();
+        command.executing().subscribe();
+        command.errors().subscribe();
+    }
+
+    @Benchmark
+    public void loopOfExecute(Blackhole blackhole) {
+        for (Integer input : inputs) {
+            command.execute(input).subscribe(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void executeAll_unordered(Blackhole blackhole) {
+        command.executeAll(inputs, 4).subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void executeAll_ordered(Blackhole blackhole) {
+        command.executeAll(inputs, 4, true).subscribe(blackhole::consume);
+    }
+}
@@ -0,0 +1,74 @@
+package com.shundaojia.benchmark;
+
+import com.shundaojia.rxcommand.RxCommand;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.observables.ConnectableObservable;
+
+/**
+ * Throughput of {@link RxCommand#execute(Object)} and of the enabled check it performs.
+ * Run with the gc profiler to see the allocations per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExecuteBenchmark {
+
+    private RxCommand<Integer> command;
+
+    private RxCommand<Integer> observedCommand;
+
+    private ConnectableObservable<Boolean> replayedEnabled;
+
+    private volatile boolean enabled = true;
+
+    @Setup
+    public void setup() {
+        MainThread.useTrampoline();
+        command = RxCommand.create(o -> Observable.just(1));
+        observedCommand = RxCommand.create(o -> Observable.just(1));
+        observedCommand.switchToLatest().subscribe();
+        observedCommand.errors().subscribe();
+        observedCommand.executing().subscribe();
+        replayedEnabled = Observable.just(true).replay(1);
+        replayedEnabled.connect();
+    }
+
+    @Benchmark
+    public Observable<Integer> execute() {
+        return command.execute(null);
+    }
+
+    /**
+     * execute() on a command whose values, errors and executing state are all observed,
+     * as a bound screen would do.
+     */
+    @Benchmark
+    public Observable<Integer> execute_observed() {
+        return observedCommand.execute(null);
+    }
+
+    /**
+     * The enabled check {@link RxCommand#execute(Object)} used to do, a blocking
+     * subscription to the replayed enabled stream.
+     */
+    @Benchmark
+    public boolean enabledCheck_blockingFirst() {
+        return replayedEnabled.blockingFirst();
+    }
+
+    @Benchmark
+    public boolean enabledCheck_volatileRead() {
+        return enabled;
+    }
+}
@@ -0,0 +1,19 @@
+package com.shundaojia.benchmark;
+
+import io.reactivex.android.plugins.RxAndroidPlugins;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * There is no Looper on the plain JVM, so the main thread scheduler is replaced
+ * by the trampoline scheduler before RxCommand first touches it.
+ */
+final class MainThread {
+
+    private MainThread() {
+    }
+
+    static void useTrampoline() {
+        RxAndroidPlugins.setInitMainThreadSchedulerHandler(scheduler -> Schedulers.trampoline());
+        RxAndroidPlugins.setMainThreadSchedulerHandler(scheduler -> Schedulers.trampoline());
+    }
+}
@@ -0,0 +1,80 @@
+package com.shundaojia.benchmark;
+
+import com.shundaojia.variable.IntVariable;
+import com.shundaojia.variable.Variable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.disposables.CompositeDisposable;
+
+/**
+ * {@link IntVariable} against {@link Variable} of Integer, written with values outside of the
+ * Integer cache as a frame counter would be. Run with the gc profiler to compare the
+ * allocations per write, with and without an observer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PrimitiveVariableBenchmark {
+
+    private IntVariable intVariable;
+
+    private IntVariable observedIntVariable;
+
+    private Variable<Integer> variable;
+
+    private Variable<Integer> observedVariable;
+
+    private final CompositeDisposable disposables = new CompositeDisposable();
+
+    private int counter = 1000;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        intVariable = new IntVariable(0);
+        observedIntVariable = new IntVariable(0);
+        disposables.add(observedIntVariable.asObservable().subscribe(blackhole::consume));
+        variable = new Variable<>(0);
+        observedVariable = new Variable<>(0);
+        disposables.add(observedVariable.asObservable().subscribe(blackhole::consume));
+    }
+
+    @TearDown
+    public void tearDown() {
+        disposables.clear();
+    }
+
+    @Benchmark
+    public int intVariable_setValue() {
+        intVariable.setValue(++counter);
+        return intVariable.value();
+    }
+
+    @Benchmark
+    public int intVariable_setValue_observed() {
+        observedIntVariable.setValue(++counter);
+        return observedIntVariable.value();
+    }
+
+    @Benchmark
+    public int variable_setValue() {
+        variable.setValue(++counter);
+        return variable.value();
+    }
+
+    @Benchmark
+    public int variable_setValue_observed() {
+        observedVariable.setValue(++counter);
+        return observedVariable.value();
+    }
+}
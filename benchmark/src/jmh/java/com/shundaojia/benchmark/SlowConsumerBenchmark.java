@@ -0,0 +1,126 @@
+package com.shundaojia.benchmark;
+
+import com.shundaojia.rxcommand.FlowableCommand;
+import com.shundaojia.rxcommand.ReplayPolicy;
+import com.shundaojia.rxcommand.RxCommand;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A fast execution consumed by a slow subscriber on another thread. The `peakBacklog` counter is
+ * the largest number of values produced but not yet consumed, i.e. held in memory in between.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SlowConsumerBenchmark {
+
+    @Param("100000")
+    public int items;
+
+    @Param("20")
+    public int consumerTokens;
+
+    private RxCommand<Integer> rxCommand;
+
+    private FlowableCommand<Integer> flowableCommand;
+
+    private final CompositeDisposable disposables = new CompositeDisposable();
+
+    private final AtomicLong produced = new AtomicLong();
+
+    private long consumed;
+
+    private volatile long peakBacklog;
+
+    private volatile CountDownLatch done;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long peakBacklog;
+    }
+
+    @Setup
+    public void setup() {
+        rxCommand = RxCommand.<Integer>builder(o -> Observable.range(0, items)
+                .doOnNext(i -> produced.incrementAndGet()))
+                .workScheduler(Schedulers.computation())
+                .deliveryScheduler(Schedulers.trampoline())
+                .allowsConcurrentExecution(true)
+                .replayPolicy(ReplayPolicy.none())
+                .build();
+        disposables.add(rxCommand.switchToLatest()
+                .observeOn(Schedulers.single())
+                .subscribe(this::consume));
+
+        flowableCommand = FlowableCommand.<Integer>builder(o -> Flowable.range(0, items)
+                .doOnNext(i -> produced.incrementAndGet()))
+                .workScheduler(Schedulers.computation())
+                .deliveryScheduler(Schedulers.trampoline())
+                .allowsConcurrentExecution(true)
+                .replayPolicy(ReplayPolicy.none())
+                .build();
+        disposables.add(flowableCommand.switchToLatest()
+                .observeOn(Schedulers.single())
+                .subscribe(this::consume));
+    }
+
+    @TearDown
+    public void tearDown() {
+        disposables.clear();
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        produced.set(0);
+        consumed = 0;
+        peakBacklog = 0;
+        done = new CountDownLatch(1);
+    }
+
+    @Benchmark
+    public void rxCommand(Counters counters) throws InterruptedException {
+        rxCommand.execute(null);
+        done.await();
+        counters.peakBacklog = Math.max(counters.peakBacklog, peakBacklog);
+    }
+
+    @Benchmark
+    public void flowableCommand(Counters counters) throws InterruptedException {
+        flowableCommand.execute(null);
+        done.await();
+        counters.peakBacklog = Math.max(counters.peakBacklog, peakBacklog);
+    }
+
+    private void consume(int item) {
+        Blackhole.consumeCPU(consumerTokens);
+        long backlog = produced.get() - ++consumed;
+        if (backlog > peakBacklog) {
+            peakBacklog = backlog;
+        }
+        if (item == items - 1) {
+            done.countDown();
+        }
+    }
+}
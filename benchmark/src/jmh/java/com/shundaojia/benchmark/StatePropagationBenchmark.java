@@ -0,0 +1,76 @@
+package com.shundaojia.benchmark;
+
+import com.shundaojia.rxcommand.RxCommand;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.subjects.PublishSubject;
+
+/**
+ * The latency of one execution as seen by bound views: from {@link RxCommand#execute(Object)}
+ * until `executing` and `enabled` observers have received both transitions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StatePropagationBenchmark {
+
+    private RxCommand<Integer> command;
+
+    private PublishSubject<Integer> current;
+
+    private final CompositeDisposable disposables = new CompositeDisposable();
+
+    private int transitions;
+
+    @Setup
+    public void setup() {
+        MainThread.useTrampoline();
+        command = RxCommand.create(o -> current = PublishSubject.create());
+        disposables.add(command.executing().subscribe(executing -> transitions++));
+        disposables.add(command.enabled().subscribe(enabled -> transitions++));
+    }
+
+    @TearDown
+    public void tearDown() {
+        disposables.clear();
+    }
+
+    @Benchmark
+    public int executeAndComplete() {
+        command.execute(null);
+        current.onComplete();
+        return transitions;
+    }
+
+    @Benchmark
+    public int executeAndFail() {
+        command.execute(null);
+        current.onError(Failure.INSTANCE);
+        return transitions;
+    }
+
+    /**
+     * A preallocated error, so that the benchmark does not measure filling in stack traces.
+     */
+    private static final class Failure extends RuntimeException {
+
+        static final Failure INSTANCE = new Failure();
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
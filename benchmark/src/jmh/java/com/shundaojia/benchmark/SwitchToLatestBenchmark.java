@@ -0,0 +1,68 @@
+package com.shundaojia.benchmark;
+
+import com.shundaojia.rxcommand.ReplayPolicy;
+import com.shundaojia.rxcommand.RxCommand;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * `executions` concurrent executions of `items` values each, produced on the computation
+ * scheduler and observed through {@link RxCommand#switchToLatest()}. One operation ends
+ * when the last execution has completed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SwitchToLatestBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int executions;
+
+    @Param("1000")
+    public int items;
+
+    private RxCommand<Integer> command;
+
+    private Disposable subscription;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        MainThread.useTrampoline();
+        command = RxCommand.<Integer>builder(o -> Observable.range(0, items))
+                .workScheduler(Schedulers.computation())
+                .deliveryScheduler(Schedulers.trampoline())
+                .allowsConcurrentExecution(true)
+                .replayPolicy(ReplayPolicy.none())
+                .build();
+        subscription = command.switchToLatest().subscribe(blackhole::consume);
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscription.dispose();
+    }
+
+    @Benchmark
+    public void executeConcurrently() {
+        Observable<Integer> last = null;
+        for (int i = 0; i < executions; i++) {
+            last = command.execute(i);
+        }
+        last.ignoreElements().blockingAwait();
+    }
+}
@@ -0,0 +1,38 @@
+package com.shundaojia.benchmark;
+
+import io.reactivex.Observable;
+import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.Subject;
+
+/**
+ * The monitor-based {@link com.shundaojia.variable.Variable} of 1.2.2, kept as the baseline of
+ * {@link VariableBenchmark}.
+ */
+final class SynchronizedVariable<T> {
+
+    private T val;
+
+    private final Subject<T> subject;
+
+    SynchronizedVariable(T initial) {
+        val = initial;
+        this.subject = BehaviorSubject.<T>create().toSerialized();
+    }
+
+    T value() {
+        synchronized (this) {
+            return val;
+        }
+    }
+
+    void setValue(T value) {
+        synchronized (this) {
+            this.val = value;
+        }
+        subject.onNext(value);
+    }
+
+    Observable<T> asObservable() {
+        return subject;
+    }
+}
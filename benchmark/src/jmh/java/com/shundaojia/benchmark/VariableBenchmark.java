@@ -0,0 +1,112 @@
+package com.shundaojia.benchmark;
+
+import com.shundaojia.variable.Variable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.disposables.CompositeDisposable;
+
+/**
+ * Throughput of {@link Variable#setValue(Object)} with one observer, from one thread and from
+ * several threads writing the same variable, compared with the {@link SynchronizedVariable}
+ * baseline.
+ * <p>
+ * The contended benchmarks run fixed batches of {@value #BATCH} calls per thread: a thread
+ * emitting on behalf of the others may otherwise never get out of the drain loop while they
+ * keep writing, and the iteration would never end.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VariableBenchmark {
+
+    private static final Integer VALUE = 1;
+
+    private static final int BATCH = 100000;
+
+    private Variable<Integer> variable;
+
+    private SynchronizedVariable<Integer> synchronizedVariable;
+
+    private final CompositeDisposable disposables = new CompositeDisposable();
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        variable = new Variable<>(0);
+        disposables.add(variable.asObservable().subscribe(blackhole::consume));
+        synchronizedVariable = new SynchronizedVariable<>(0);
+        disposables.add(synchronizedVariable.asObservable().subscribe(blackhole::consume));
+    }
+
+    @TearDown
+    public void tearDown() {
+        disposables.clear();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void setValue() {
+        variable.setValue(VALUE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 10, batchSize = BATCH)
+    @Measurement(iterations = 10, batchSize = BATCH)
+    public void setValue_contended() {
+        variable.setValue(VALUE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Integer value_contended() {
+        return variable.value();
+    }
+
+    @Benchmark
+    @Threads(4)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 10, batchSize = BATCH)
+    @Measurement(iterations = 10, batchSize = BATCH)
+    public Integer updateAndGet_contended() {
+        return variable.updateAndGet(i -> i + 1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void baseline_setValue() {
+        synchronizedVariable.setValue(VALUE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 10, batchSize = BATCH)
+    @Measurement(iterations = 10, batchSize = BATCH)
+    public void baseline_setValue_contended() {
+        synchronizedVariable.setValue(VALUE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Integer baseline_value_contended() {
+        return synchronizedVariable.value();
+    }
+}
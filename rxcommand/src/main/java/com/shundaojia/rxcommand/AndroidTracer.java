@@ -0,0 +1,107 @@
+package com.shundaojia.rxcommand;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.lang.reflect.Method;
+
+import io.reactivex.annotations.NonNull;
+
+/**
+ * Sends the trace sections of commands to systrace, through {@link Trace}. Does nothing before
+ * API 18.
+ * <p>
+ * Async sections use `Trace.beginAsyncSection` from API 29, and the hidden
+ * `Trace.asyncTraceBegin` under the application tag before. Both are called through
+ * reflection, and async sections are dropped if neither can be found.
+ */
+public final class AndroidTracer implements CommandTracer {
+
+    /**
+     * The longest name systrace accepts.
+     */
+    private static final int MAX_NAME_LENGTH = 127;
+
+    /**
+     * `Trace.TRACE_TAG_APP`.
+     */
+    private static final long TRACE_TAG_APP = 1L << 12;
+
+    private static final AndroidTracer INSTANCE = new AndroidTracer();
+
+    private Method mAsyncBegin;
+
+    private Method mAsyncEnd;
+
+    /**
+     * Whether the async methods take the trace tag first, before API 29.
+     */
+    private boolean mTagged;
+
+    public static AndroidTracer instance() {
+        return INSTANCE;
+    }
+
+    private AndroidTracer() {
+        if (Build.VERSION.SDK_INT < 18) {
+            return;
+        }
+        try {
+            if (Build.VERSION.SDK_INT >= 29) {
+                mAsyncBegin = Trace.class.getMethod("beginAsyncSection", String.class, int.class);
+                mAsyncEnd = Trace.class.getMethod("endAsyncSection", String.class, int.class);
+            } else {
+                mAsyncBegin = Trace.class.getMethod("asyncTraceBegin", long.class, String.class, int.class);
+                mAsyncEnd = Trace.class.getMethod("asyncTraceEnd", long.class, String.class, int.class);
+                mTagged = true;
+            }
+        } catch (Exception e) {
+            mAsyncBegin = null;
+            mAsyncEnd = null;
+        }
+    }
+
+    @Override
+    public void beginSection(@NonNull String name) {
+        // checked inline rather than through a field, so that lint sees the guard
+        if (Build.VERSION.SDK_INT >= 18) {
+            Trace.beginSection(truncate(name));
+        }
+    }
+
+    @Override
+    public void endSection() {
+        if (Build.VERSION.SDK_INT >= 18) {
+            Trace.endSection();
+        }
+    }
+
+    @Override
+    public void beginAsyncSection(@NonNull String name, int cookie) {
+        invoke(mAsyncBegin, name, cookie);
+    }
+
+    @Override
+    public void endAsyncSection(@NonNull String name, int cookie) {
+        invoke(mAsyncEnd, name, cookie);
+    }
+
+    private void invoke(Method method, String name, int cookie) {
+        if (method == null) {
+            return;
+        }
+        try {
+            if (mTagged) {
+                method.invoke(null, TRACE_TAG_APP, truncate(name), cookie);
+            } else {
+                method.invoke(null, truncate(name), cookie);
+            }
+        } catch (Exception e) {
+            // tracing must never break the command
+        }
+    }
+
+    private static String truncate(String name) {
+        return name.length() <= MAX_NAME_LENGTH ? name : name.substring(0, MAX_NAME_LENGTH);
+    }
+}
@@ -0,0 +1,45 @@
+package com.shundaojia.rxcommand;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+
+/**
+ * Sends the values of one subscription to several targets, and lets go of them once disposed.
+ * The part of {@link RxCommandBinder} that does not depend on views.
+ * <p>
+ * Disposing drops the targets before disposing the subscription, so the targets are released
+ * even if the source keeps a reference to the observer for a while.
+ */
+final class Binding implements Disposable {
+
+    private volatile Consumer<? super Boolean>[] mTargets;
+
+    private final Disposable mSubscription;
+
+    Binding(Observable<Boolean> source, Consumer<? super Boolean>[] targets) {
+        mTargets = targets;
+        mSubscription = source.subscribe(this::set);
+    }
+
+    private void set(Boolean value) throws Exception {
+        Consumer<? super Boolean>[] targets = mTargets;
+        if (targets == null) {
+            return;
+        }
+        for (Consumer<? super Boolean> target : targets) {
+            target.accept(value);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        mTargets = null;
+        mSubscription.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return mTargets == null;
+    }
+}
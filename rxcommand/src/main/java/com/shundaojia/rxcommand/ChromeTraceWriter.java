@@ -0,0 +1,160 @@
+package com.shundaojia.rxcommand;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+import io.reactivex.annotations.NonNull;
+
+/**
+ * Writes the trace sections of commands as Chrome trace events, in the JSON array format that
+ * `chrome://tracing` and Perfetto open. Works on the plain JVM, e.g. to capture the traces of
+ * unit tests.
+ * <p>
+ * Events are written as they happen, timestamped in microseconds since the writer was created.
+ * The array is ended by {@link #close()}, which also reports the first error the writer ran
+ * into, if any: tracing never throws at the command.
+ */
+public final class ChromeTraceWriter implements CommandTracer, Closeable {
+
+    private static final String CATEGORY = "rxcommand";
+
+    private final Writer mOut;
+
+    private final long mOrigin = System.nanoTime();
+
+    /**
+     * Guarded by this, like the fields below.
+     */
+    private boolean mEmpty = true;
+
+    private boolean mClosed;
+
+    private IOException mError;
+
+    /**
+     * @param out receives the events, closed by {@link #close()}
+     */
+    public ChromeTraceWriter(@NonNull Writer out) {
+        if (out == null) {
+            throw new NullPointerException("out is null");
+        }
+        mOut = out;
+        write("[");
+    }
+
+    @Override
+    public void beginSection(@NonNull String name) {
+        event("B", name, null);
+    }
+
+    @Override
+    public void endSection() {
+        event("E", null, null);
+    }
+
+    @Override
+    public void beginAsyncSection(@NonNull String name, int cookie) {
+        event("b", name, cookie);
+    }
+
+    @Override
+    public void endAsyncSection(@NonNull String name, int cookie) {
+        event("e", name, cookie);
+    }
+
+    /**
+     * Ends the array of events and closes the underlying writer.
+     *
+     * @throws IOException the first error the writer ran into
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            write("\n]\n");
+            mClosed = true;
+            try {
+                mOut.close();
+            } catch (IOException e) {
+                if (mError == null) {
+                    mError = e;
+                }
+            }
+            if (mError != null) {
+                throw mError;
+            }
+        }
+    }
+
+    private void event(String phase, String name, Integer id) {
+        long micros = (System.nanoTime() - mOrigin) / 1000;
+        StringBuilder event = new StringBuilder(128);
+        event.append("{\"ph\":\"").append(phase).append('"');
+        if (name != null) {
+            event.append(",\"name\":");
+            quote(event, name);
+        }
+        event.append(",\"cat\":\"").append(CATEGORY).append('"');
+        if (id != null) {
+            event.append(",\"id\":").append(id.intValue());
+        }
+        event.append(",\"ts\":").append(micros)
+                .append(",\"pid\":1,\"tid\":").append(Thread.currentThread().getId())
+                .append('}');
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            write(mEmpty ? "\n" : ",\n");
+            write(event.toString());
+            mEmpty = false;
+        }
+    }
+
+    private void write(String s) {
+        synchronized (this) {
+            if (mError != null) {
+                return;
+            }
+            try {
+                mOut.write(s);
+            } catch (IOException e) {
+                mError = e;
+            }
+        }
+    }
+
+    private static void quote(StringBuilder out, String s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
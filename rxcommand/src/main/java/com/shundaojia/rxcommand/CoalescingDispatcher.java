@@ -0,0 +1,210 @@
+package com.shundaojia.rxcommand;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Observer;
+import io.reactivex.Scheduler;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Delivers the values of state streams on a scheduler, like {@link Observable#observeOn(Scheduler)},
+ * but coalesced: every stream only delivers its latest value, and all the streams composed with
+ * the same dispatcher are served by a single scheduled task.
+ * <p>
+ * Share one dispatcher between the commands of a screen, see
+ * {@link RxCommand.Builder#stateDispatcher(CoalescingDispatcher)}, so that the states of
+ * dozens of bound views toggling together cost one dispatch per frame instead of one per
+ * state change.
+ */
+public final class CoalescingDispatcher {
+
+    /**
+     * Dispatch on `scheduler` as soon as possible after the first pending value.
+     *
+     * @param scheduler the scheduler values are delivered on, usually the main thread
+     */
+    public static CoalescingDispatcher create(@NonNull Scheduler scheduler) {
+        return create(scheduler, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Dispatch on `scheduler` `delay` after the first pending value, collecting the values sent
+     * in between. A delay of one frame (16ms) gives one dispatch per frame.
+     *
+     * @param scheduler the scheduler values are delivered on, usually the main thread
+     * @param delay     how long to wait for more values before dispatching
+     * @param unit      the unit of `delay`
+     */
+    public static CoalescingDispatcher create(@NonNull Scheduler scheduler, long delay, @NonNull TimeUnit unit) {
+        if (scheduler == null) {
+            throw new NullPointerException("scheduler is null");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit is null");
+        }
+        return new CoalescingDispatcher(scheduler.createWorker(), delay, unit);
+    }
+
+    private final Scheduler.Worker mWorker;
+
+    private final long mDelay;
+
+    private final TimeUnit mUnit;
+
+    private final Queue<Slot<?>> mPending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+
+    private final Runnable mDispatch = this::dispatch;
+
+    private CoalescingDispatcher(Scheduler.Worker worker, long delay, TimeUnit unit) {
+        mWorker = worker;
+        mDelay = delay;
+        mUnit = unit;
+    }
+
+    /**
+     * A transformer delivering the values of a stream through this dispatcher.
+     */
+    public <T> ObservableTransformer<T, T> coalesce() {
+        return upstream -> new Coalesced<>(upstream, this);
+    }
+
+    private void enqueue(Slot<?> slot) {
+        mPending.offer(slot);
+        if (mScheduled.compareAndSet(false, true)) {
+            if (mDelay > 0) {
+                mWorker.schedule(mDispatch, mDelay, mUnit);
+            } else {
+                mWorker.schedule(mDispatch);
+            }
+        }
+    }
+
+    private void dispatch() {
+        // slots enqueued from now on need another dispatch, unless this one picks them up
+        mScheduled.set(false);
+        Slot<?> slot;
+        while ((slot = mPending.poll()) != null) {
+            slot.deliver();
+        }
+    }
+
+    private static final class Coalesced<T> extends Observable<T> {
+
+        private final ObservableSource<T> mSource;
+
+        private final CoalescingDispatcher mDispatcher;
+
+        Coalesced(ObservableSource<T> source, CoalescingDispatcher dispatcher) {
+            mSource = source;
+            mDispatcher = dispatcher;
+        }
+
+        @Override
+        protected void subscribeActual(Observer<? super T> observer) {
+            mSource.subscribe(new Slot<>(observer, mDispatcher));
+        }
+    }
+
+    /**
+     * Holds the latest undelivered value of one subscription.
+     */
+    private static final class Slot<T> implements Observer<T>, Disposable {
+
+        private final Observer<? super T> mDownstream;
+
+        private final CoalescingDispatcher mDispatcher;
+
+        private final AtomicReference<T> mLatest = new AtomicReference<>();
+
+        private final AtomicBoolean mQueued = new AtomicBoolean();
+
+        private Disposable mUpstream;
+
+        private volatile Throwable mError;
+
+        private volatile boolean mDone;
+
+        private volatile boolean mDisposed;
+
+        Slot(Observer<? super T> downstream, CoalescingDispatcher dispatcher) {
+            mDownstream = downstream;
+            mDispatcher = dispatcher;
+        }
+
+        @Override
+        public void onSubscribe(@NonNull Disposable d) {
+            mUpstream = d;
+            mDownstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(@NonNull T t) {
+            mLatest.set(t);
+            schedule();
+        }
+
+        @Override
+        public void onError(@NonNull Throwable e) {
+            mError = e;
+            mDone = true;
+            schedule();
+        }
+
+        @Override
+        public void onComplete() {
+            mDone = true;
+            schedule();
+        }
+
+        @Override
+        public void dispose() {
+            mDisposed = true;
+            mUpstream.dispose();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return mDisposed;
+        }
+
+        private void schedule() {
+            if (mQueued.compareAndSet(false, true)) {
+                mDispatcher.enqueue(this);
+            }
+        }
+
+        /**
+         * Called on the dispatcher's worker only.
+         */
+        void deliver() {
+            mQueued.set(false);
+            if (mDisposed) {
+                return;
+            }
+            boolean done = mDone;
+            T value = mLatest.getAndSet(null);
+            if (value != null) {
+                mDownstream.onNext(value);
+            }
+            if (done) {
+                mDisposed = true;
+                Throwable error = mError;
+                if (error != null) {
+                    mDownstream.onError(error);
+                } else {
+                    mDownstream.onComplete();
+                }
+            }
+        }
+    }
+}
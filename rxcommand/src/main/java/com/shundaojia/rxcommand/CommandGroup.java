@@ -0,0 +1,212 @@
+package com.shundaojia.rxcommand;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.annotations.NonNull;
+
+/**
+ * Commands counting their executions together, see {@link RxCommand.Builder#group(CommandGroup)}.
+ * <p>
+ * The group keeps a single count of the executions of all its members, and lets at most
+ * {@link #maxConcurrency()} of them run at the same time: while the group is full, its members
+ * are disabled, or queue their calls if they have a queue. A {@link #mutuallyExclusive()} group
+ * runs one execution at a time, whichever command it belongs to. When an execution terminates
+ * while members have queued calls, its slot goes straight to the first of them, so that the
+ * group does not flicker to not executing in between. Every member follows the group with one
+ * subscription, instead of combining the states of the other members.
+ * <p>
+ * The group references its members, so give it the lifetime of the screen they belong to.
+ */
+public final class CommandGroup {
+
+    /**
+     * A group that does not limit its members, only tracks whether any of them is executing.
+     */
+    public static CommandGroup create() {
+        return builder().build();
+    }
+
+    /**
+     * A group running at most `maxConcurrency` executions of its members at the same time.
+     *
+     * @param maxConcurrency the maximum number of executions, must be positive
+     */
+    public static CommandGroup create(int maxConcurrency) {
+        return builder().maxConcurrency(maxConcurrency).build();
+    }
+
+    /**
+     * A group running one execution of its members at a time.
+     */
+    public static CommandGroup mutuallyExclusive() {
+        return builder().maxConcurrency(1).build();
+    }
+
+    /**
+     * Start building a group, to choose how {@link #executing()} is delivered.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A member with a queue, taking the slot of an execution of another member that terminated.
+     */
+    interface Waiter {
+        /**
+         * @return whether a waiting call took the slot
+         */
+        boolean takeSlot();
+    }
+
+    private final ExecutionState mState;
+
+    /**
+     * The members with a queue, in the order they joined.
+     */
+    private final CopyOnWriteArrayList<Waiter> mWaiters = new CopyOnWriteArrayList<>();
+
+    private final Scheduler mDeliveryScheduler;
+
+    private final CoalescingDispatcher mStateDispatcher;
+
+    private volatile Observable<Boolean> mExecuting;
+
+    private CommandGroup(Builder builder) {
+        mState = new ExecutionState(builder.mMaxConcurrency);
+        mDeliveryScheduler = builder.mDeliveryScheduler;
+        mStateDispatcher = builder.mStateDispatcher;
+    }
+
+    /**
+     * The maximum number of executions of the members running at the same time.
+     */
+    public int maxConcurrency() {
+        return mState.maxConcurrency();
+    }
+
+    /**
+     * Whether any member is executing right now.
+     */
+    public boolean anyExecuting() {
+        return mState.running() > 0;
+    }
+
+    /**
+     * An observable of whether any member is executing, see {@link RxCommand#executing()}.
+     * <p>
+     * This observable will send its current value upon subscription, and then all future
+     * values on the delivery scheduler, the main thread by default.
+     */
+    public Observable<Boolean> executing() {
+        Observable<Boolean> executing = mExecuting;
+        if (executing == null) {
+            synchronized (this) {
+                executing = mExecuting;
+                if (executing == null) {
+                    executing = mState.executing()
+                            .compose(stateDelivery())
+                            .startWith(false)
+                            .distinctUntilChanged()
+                            .replay(1)
+                            .autoConnect();
+                    mExecuting = executing;
+                }
+            }
+        }
+        return executing;
+    }
+
+    private ObservableTransformer<Boolean, Boolean> stateDelivery() {
+        if (mStateDispatcher != null) {
+            return mStateDispatcher.coalesce();
+        }
+        // looked up only now, so that a group given its own scheduler never touches the main thread
+        Scheduler scheduler = mDeliveryScheduler != null ? mDeliveryScheduler : AndroidSchedulers.mainThread();
+        return upstream -> upstream.observeOn(scheduler);
+    }
+
+    /**
+     * Whether the group has room for another execution, sent synchronously on the thread
+     * changing it.
+     */
+    Observable<Boolean> moreExecutionsAllowed() {
+        return mState.moreExecutionsAllowed();
+    }
+
+    boolean tryStart() {
+        return mState.tryStart();
+    }
+
+    void addWaiter(Waiter waiter) {
+        mWaiters.add(waiter);
+    }
+
+    void terminated() {
+        for (Waiter waiter : mWaiters) {
+            if (waiter.takeSlot()) {
+                return;
+            }
+        }
+        mState.terminated();
+    }
+
+    /**
+     * Collects the options of a group, see {@link #builder()}.
+     */
+    public static final class Builder {
+
+        private int mMaxConcurrency = Integer.MAX_VALUE;
+
+        private Scheduler mDeliveryScheduler;
+
+        private CoalescingDispatcher mStateDispatcher;
+
+        private Builder() {
+        }
+
+        /**
+         * Run at most `maxConcurrency` executions of the members at the same time. Unlimited by
+         * default.
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency <= 0) {
+                throw new IllegalArgumentException("maxConcurrency > 0 required but it was " + maxConcurrency);
+            }
+            mMaxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * The scheduler {@link CommandGroup#executing()} sends its values on. Defaults to the main
+         * thread.
+         */
+        public Builder deliveryScheduler(@NonNull Scheduler scheduler) {
+            if (scheduler == null) {
+                throw new NullPointerException("scheduler is null");
+            }
+            mDeliveryScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Deliver {@link CommandGroup#executing()} through `dispatcher` instead of the delivery
+         * scheduler, together with the states of the members sharing it.
+         */
+        public Builder stateDispatcher(@NonNull CoalescingDispatcher dispatcher) {
+            if (dispatcher == null) {
+                throw new NullPointerException("dispatcher is null");
+            }
+            mStateDispatcher = dispatcher;
+            return this;
+        }
+
+        public CommandGroup build() {
+            return new CommandGroup(this);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.shundaojia.rxcommand;
+
+import io.reactivex.annotations.NonNull;
+
+/**
+ * Receives what the executions of commands do, see
+ * {@link RxCommand.Builder#instrumentation(CommandInstrumentation)}.
+ * <p>
+ * A command asks for its {@link Recorder} once, when it is built, and reports to it directly,
+ * so an implementation keeps its per-command state in the recorder instead of looking it up
+ * by name on every event. A command built without instrumentation reports nothing, and does
+ * not read the clock.
+ * <p>
+ * Recorders are called on the threads the events happen on, often concurrently, and should
+ * return quickly without allocating. See {@link InMemoryInstrumentation} for one keeping
+ * counters and histograms in memory.
+ */
+public interface CommandInstrumentation {
+
+    /**
+     * @param command the name of the command, see {@link RxCommand#name()}
+     * @return the recorder of the command
+     */
+    @NonNull
+    Recorder recorder(@NonNull String command);
+
+    /**
+     * The events of one command. Durations are in nanoseconds, measured from the moment the
+     * execution started, which is the call to {@link RxCommand#execute(Object)} unless the
+     * call was queued or delayed by a throttle.
+     */
+    interface Recorder {
+
+        /**
+         * An execution started.
+         *
+         * @param running the number of executions of the command running, this one included
+         */
+        void started(int running);
+
+        /**
+         * An execution sent its first value.
+         */
+        void firstValue(long nanos);
+
+        /**
+         * An execution completed.
+         */
+        void completed(long nanos);
+
+        /**
+         * An execution failed with `error`, after its retries if any.
+         */
+        void failed(@NonNull Throwable error, long nanos);
+
+        /**
+         * An execution was disposed or cancelled before it terminated.
+         */
+        void cancelled(long nanos);
+
+        /**
+         * A call to {@link RxCommand#execute(Object)} failed because the command was disabled.
+         */
+        void rejected();
+    }
+}
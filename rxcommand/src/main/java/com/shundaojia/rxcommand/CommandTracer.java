@@ -0,0 +1,42 @@
+package com.shundaojia.rxcommand;
+
+import io.reactivex.annotations.NonNull;
+
+/**
+ * Receives trace sections for the executions of commands, see
+ * {@link RxCommand.Builder#tracer(CommandTracer)}.
+ * <p>
+ * Every execution is numbered, and its sections are named after the command and that number,
+ * e.g. `login#3`. An execution is one async section, from the start of the execution to its
+ * terminal event or cancellation, which may happen on another thread. Inside it, the call to
+ * `func`, the subscription to the observable it returned and the delivery of the terminal
+ * event are synchronous sections of the thread they run on.
+ * <p>
+ * {@link AndroidTracer} sends them to systrace, {@link ChromeTraceWriter} writes them as
+ * Chrome trace events on the JVM. A command built without a tracer traces nothing.
+ */
+public interface CommandTracer {
+
+    /**
+     * Begins a section on the current thread, nested in the sections it already began.
+     */
+    void beginSection(@NonNull String name);
+
+    /**
+     * Ends the section the current thread began last.
+     */
+    void endSection();
+
+    /**
+     * Begins a section that may end on another thread.
+     *
+     * @param cookie tells apart the sections with the same name running at the same time
+     */
+    void beginAsyncSection(@NonNull String name, int cookie);
+
+    /**
+     * Ends the section begun by {@link #beginAsyncSection(String, int)} with the same name and
+     * cookie.
+     */
+    void endAsyncSection(@NonNull String name, int cookie);
+}
@@ -0,0 +1,79 @@
+package com.shundaojia.rxcommand;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * One call to {@link RxCommand#submit(Object)}: its observable, and a way to cancel it.
+ * <p>
+ * Disposing the handle cancels the call. A running execution is disconnected from the
+ * observable returned by `func`, which disposes it, and stops counting as executing; its
+ * observable completes without further values. A call still waiting in the queue or delayed
+ * by a throttle is dropped, its observable completes without values. Either way, a command
+ * whose `func` returned the observable of the call sees it complete. Disposing a call that
+ * has already terminated, or was served from the cache, does nothing.
+ * <p>
+ * Calls that joined the same execution of a single-flight command share it: disposing one of
+ * them does not stop the others, the execution is only cancelled once all of them have been
+ * disposed. A call made by {@link RxCommand#execute(Object)} cannot be disposed, so it keeps
+ * the execution it shares running.
+ */
+public final class ExecutionHandle<T> implements Disposable {
+
+    private Observable<T> mObservable;
+
+    /**
+     * Cancels the call in its current stage, guarded by this.
+     */
+    private Disposable mCanceller;
+
+    private volatile boolean mDisposed;
+
+    ExecutionHandle() {
+    }
+
+    /**
+     * The same observable {@link RxCommand#execute(Object)} would have returned.
+     */
+    public Observable<T> observable() {
+        return mObservable;
+    }
+
+    void setObservable(Observable<T> observable) {
+        mObservable = observable;
+    }
+
+    /**
+     * Called when the call enters a new stage, e.g. when it leaves the queue and starts.
+     */
+    void setCanceller(Disposable canceller) {
+        synchronized (this) {
+            if (!mDisposed) {
+                mCanceller = canceller;
+                return;
+            }
+        }
+        canceller.dispose();
+    }
+
+    @Override
+    public void dispose() {
+        Disposable canceller;
+        synchronized (this) {
+            if (mDisposed) {
+                return;
+            }
+            mDisposed = true;
+            canceller = mCanceller;
+            mCanceller = null;
+        }
+        if (canceller != null) {
+            canceller.dispose();
+        }
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return mDisposed;
+    }
+}
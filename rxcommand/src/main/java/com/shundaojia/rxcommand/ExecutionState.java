@@ -0,0 +1,139 @@
+package com.shundaojia.rxcommand;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.subjects.BehaviorSubject;
+
+/**
+ * The number of running executions of a command, and the states derived from it.
+ * <p>
+ * Executions may terminate on any thread. {@link #drain()} makes sure only one thread emits at
+ * a time, and that the last emitted states match the latest count.
+ */
+final class ExecutionState {
+
+    /**
+     * The number of executions that have been started and not yet terminated.
+     */
+    private final AtomicInteger mCount = new AtomicInteger();
+
+    private final AtomicInteger mWip = new AtomicInteger();
+
+    private final BehaviorSubject<Boolean> mExecuting = BehaviorSubject.createDefault(false);
+
+    private final BehaviorSubject<Boolean> mMoreExecutionsAllowed = BehaviorSubject.createDefault(true);
+
+    private volatile int mMaxConcurrency;
+
+    /**
+     * Whether calls that cannot start right away are still accepted, by a queue.
+     */
+    private volatile boolean mQueueAccepting;
+
+    /**
+     * Whether the group of the command, if any, has room for another execution.
+     */
+    private volatile boolean mGroupAllowed = true;
+
+    ExecutionState(int maxConcurrency) {
+        mMaxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Whether any execution is running, sent synchronously on the thread changing it.
+     */
+    Observable<Boolean> executing() {
+        return mExecuting;
+    }
+
+    /**
+     * Whether another execution may start, sent synchronously on the thread changing it.
+     */
+    Observable<Boolean> moreExecutionsAllowed() {
+        return mMoreExecutionsAllowed;
+    }
+
+    /**
+     * The current value of {@link #moreExecutionsAllowed()}, computed from the latest count
+     * instead of the last state sent.
+     */
+    boolean allowsMoreExecutions() {
+        return mCount.get() < mMaxConcurrency && mGroupAllowed || mQueueAccepting;
+    }
+
+    /**
+     * The number of executions that have been started and not yet terminated.
+     */
+    int running() {
+        return mCount.get();
+    }
+
+    int maxConcurrency() {
+        return mMaxConcurrency;
+    }
+
+    void setMaxConcurrency(int maxConcurrency) {
+        mMaxConcurrency = maxConcurrency;
+        drain();
+    }
+
+    void setQueueAccepting(boolean accepting) {
+        if (mQueueAccepting != accepting) {
+            mQueueAccepting = accepting;
+            drain();
+        }
+    }
+
+    void setGroupAllowed(boolean allowed) {
+        if (mGroupAllowed != allowed) {
+            mGroupAllowed = allowed;
+            drain();
+        }
+    }
+
+    /**
+     * Counts a new execution, unless {@link #maxConcurrency()} executions are already running.
+     *
+     * @return whether the execution may start
+     */
+    boolean tryStart() {
+        for (; ; ) {
+            int count = mCount.get();
+            if (count >= mMaxConcurrency) {
+                return false;
+            }
+            if (mCount.compareAndSet(count, count + 1)) {
+                drain();
+                return true;
+            }
+        }
+    }
+
+    void terminated() {
+        mCount.decrementAndGet();
+        drain();
+    }
+
+    private void drain() {
+        if (mWip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        for (; ; ) {
+            int count = mCount.get();
+            boolean executing = count > 0;
+            boolean allowed = count < mMaxConcurrency && mGroupAllowed || mQueueAccepting;
+            if (executing != mExecuting.getValue()) {
+                mExecuting.onNext(executing);
+            }
+            if (allowed != mMoreExecutionsAllowed.getValue()) {
+                mMoreExecutionsAllowed.onNext(allowed);
+            }
+            missed = mWip.addAndGet(-missed);
+            if (missed == 0) {
+                break;
+            }
+        }
+    }
+}
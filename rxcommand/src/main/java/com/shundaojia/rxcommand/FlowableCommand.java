@@ -0,0 +1,471 @@
+package com.shundaojia.rxcommand;
+
+import android.support.annotation.MainThread;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableOperator;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+import io.reactivex.flowables.ConnectableFlowable;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+
+/**
+ * A {@link RxCommand} for work that produces values faster than they may be consumed.
+ * <p>
+ * It has the same enabled, executing and errors semantics as {@link RxCommand}, but executions
+ * are {@link Flowable}s and so are all of its outputs. With {@link ReplayPolicy#none()}, values of
+ * an execution are requested at the pace of its subscribers, and every output has its own
+ * {@link BackpressureStrategy}, see {@link Builder}.
+ */
+public class FlowableCommand<T> {
+
+    public static <T> FlowableCommand<T> create(RxCommand.Func<Object, Flowable<T>> function) {
+        return new FlowableCommand<>(function);
+    }
+
+    public static <T> FlowableCommand<T> create(Observable<Boolean> enabled, RxCommand.Func<Object, Flowable<T>> function) {
+        return new FlowableCommand<>(enabled, function);
+    }
+
+    /**
+     * Start building a command whose options are fixed at creation time, such as its schedulers
+     * and backpressure strategies.
+     *
+     * @param function see {@link #FlowableCommand(Observable, RxCommand.Func)}
+     */
+    public static <T> Builder<T> builder(@NonNull RxCommand.Func<Object, Flowable<T>> function) {
+        return new Builder<>(function);
+    }
+
+    private final RxCommand.Func<Object, Flowable<T>> mFunc;
+
+    private final Scheduler mWorkScheduler;
+
+    private final BackpressureStrategy mValuesStrategy;
+
+    private final ReplayPolicy mReplayPolicy;
+
+    private final Subject<Flowable<T>> mAddedExecutionFlowableSubject;
+
+    private final Subject<Throwable> mErrorsSubject;
+
+    private final ExecutionState mExecutionState;
+
+    /**
+     * see {@link #executionFlowables()}
+     */
+    private final Flowable<Flowable<T>> mExecutionFlowables;
+
+    /**
+     * see {@link #switchToLatest()}
+     */
+    private final Flowable<T> mLatestFlowable;
+
+    /**
+     * see {@link #errors()}
+     */
+    private final Flowable<Throwable> mErrors;
+
+    /**
+     * see {@link #executing()}
+     */
+    private final Flowable<Boolean> mExecuting;
+
+    /**
+     * see {@link #enabled()}
+     */
+    private final Flowable<Boolean> mEnabled;
+
+    /**
+     * The latest enabled state, read by {@link #execute(Object)} without subscribing.
+     */
+    private volatile boolean mImmediateEnabledValue = true;
+
+    /**
+     * create a command that is conditionally enabled.
+     *
+     * @param enabledObservable see {@link RxCommand#RxCommand(Observable, RxCommand.Func)}
+     * @param func              A function which will map each input value (passed to
+     *                          {@link #execute(Object)}) to a flowable of work. Neither the
+     *                          function nor the returned flowable may be null.
+     */
+    public FlowableCommand(@Nullable Observable<Boolean> enabledObservable, @NonNull RxCommand.Func<Object, Flowable<T>> func) {
+        this(new Builder<>(func).enabled(enabledObservable));
+    }
+
+    /**
+     * Call {@link #FlowableCommand(Observable, RxCommand.Func)} with a null `enabledObservable`.
+     *
+     * @param func the factory creating flowable
+     */
+    public FlowableCommand(RxCommand.Func<Object, Flowable<T>> func) {
+        this(null, func);
+    }
+
+    /**
+     * create a command with the options collected by `builder`.
+     *
+     * @param builder see {@link #builder(RxCommand.Func)}
+     */
+    protected FlowableCommand(@NonNull Builder<T> builder) {
+        mFunc = builder.mFunc;
+        mWorkScheduler = builder.mWorkScheduler != null ? builder.mWorkScheduler : AndroidSchedulers.mainThread();
+        Scheduler deliveryScheduler = builder.mDeliveryScheduler != null ? builder.mDeliveryScheduler : AndroidSchedulers.mainThread();
+        mValuesStrategy = builder.mValuesStrategy;
+        mReplayPolicy = builder.mReplayPolicy;
+        mAddedExecutionFlowableSubject = PublishSubject.create();
+        mErrorsSubject = PublishSubject.<Throwable>create().toSerialized();
+        mExecutionState = new ExecutionState(builder.mAllowsConcurrentExecution ? Integer.MAX_VALUE : 1);
+
+        mExecutionFlowables = mAddedExecutionFlowableSubject
+                .map(flowable -> flowable.onErrorResumeNext(Flowable.<T>empty()))
+                .toFlowable(builder.mExecutionsStrategy)
+                .observeOn(deliveryScheduler);
+
+        mLatestFlowable = Flowable
+                .switchOnNext(mExecutionFlowables)
+                .publish()
+                .autoConnect();
+
+        mErrors = mErrorsSubject
+                .toFlowable(builder.mErrorsStrategy)
+                .observeOn(deliveryScheduler)
+                .publish()
+                .autoConnect();
+
+        mExecuting = mExecutionState.executing()
+                .toFlowable(builder.mStatesStrategy)
+                .observeOn(deliveryScheduler)
+                .startWith(false)
+                .distinctUntilChanged()
+                .replay(1)
+                .autoConnect();
+
+        Observable<Boolean> enabledObservable = builder.mEnabled;
+        if (enabledObservable == null) {
+            enabledObservable = Observable.just(true);
+        }
+
+        ConnectableFlowable<Boolean> immediateEnabled = Observable
+                .combineLatest(enabledObservable, mExecutionState.moreExecutionsAllowed(), (enabled, allowed) -> enabled && allowed)
+                .distinctUntilChanged()
+                .doOnNext(enabled -> mImmediateEnabledValue = enabled)
+                .toFlowable(builder.mStatesStrategy)
+                .replay(1);
+        immediateEnabled.connect();
+
+        mEnabled = Flowable
+                .concat(immediateEnabled.take(1),
+                        immediateEnabled.skip(1).observeOn(deliveryScheduler))
+                .distinctUntilChanged()
+                .replay(1)
+                .autoConnect();
+    }
+
+    /**
+     * see {@link RxCommand#setAllowsConcurrentExecution(boolean)}
+     */
+    public final void setAllowsConcurrentExecution(boolean allows) {
+        mExecutionState.setMaxConcurrency(allows ? Integer.MAX_VALUE : 1);
+    }
+
+    /**
+     * see {@link RxCommand#allowsConcurrentExecution()}
+     */
+    public boolean allowsConcurrentExecution() {
+        return mExecutionState.maxConcurrency() > 1;
+    }
+
+    /**
+     * see {@link RxCommand#executionObservables()}
+     */
+    public Flowable<Flowable<T>> executionFlowables() {
+        return mExecutionFlowables;
+    }
+
+    /**
+     * see {@link RxCommand#switchToLatest()}
+     */
+    public Flowable<T> switchToLatest() {
+        return mLatestFlowable;
+    }
+
+    /**
+     * see {@link RxCommand#errors()}
+     */
+    public Flowable<Throwable> errors() {
+        return mErrors;
+    }
+
+    /**
+     * see {@link RxCommand#executing()}
+     */
+    public Flowable<Boolean> executing() {
+        return mExecuting;
+    }
+
+    /**
+     * see {@link RxCommand#enabled()}
+     */
+    public Flowable<Boolean> enabled() {
+        return mEnabled;
+    }
+
+    /**
+     * see {@link RxCommand#execute(Object)}
+     * <p>
+     * The values of the execution are requested at the pace of the slowest subscriber of the
+     * returned flowable with {@link ReplayPolicy#none()}, which drops the values sent while it
+     * has no subscribers. The other policies already bound what they keep, so they request all
+     * the values, and an execution runs to its end whether or not it is subscribed to, like an
+     * execution of {@link RxCommand}.
+     */
+    @MainThread
+    public final Flowable<T> execute(@Nullable Object input) {
+        if (!mImmediateEnabledValue || !mExecutionState.tryStart()) {
+            return Flowable.error(new IllegalStateException("The command is disabled and cannot be executed"));
+        }
+        try {
+            Flowable<T> flowable = mFunc.apply(input);
+            if (flowable == null) {
+                throw new RuntimeException(String.format("null Flowable returned from flowable func for value %s", input));
+            }
+
+            final ConnectableFlowable<T> connection = mReplayPolicy.apply(applyValuesStrategy(flowable)
+                    .lift(new Execution())
+                    .subscribeOn(mWorkScheduler));
+
+            if (mReplayPolicy != ReplayPolicy.none()) {
+                // a replay only requests what its subscribers do, errors are sent to `errors()`
+                connection.subscribe(value -> {
+                }, error -> {
+                });
+            }
+            mAddedExecutionFlowableSubject.onNext(connection);
+            connection.connect();
+            return connection;
+        } catch (Exception e) {
+            e.printStackTrace();
+            mExecutionState.terminated();
+            return Flowable.error(e);
+        }
+    }
+
+    private Flowable<T> applyValuesStrategy(Flowable<T> flowable) {
+        switch (mValuesStrategy) {
+            case BUFFER:
+                return flowable.onBackpressureBuffer();
+            case DROP:
+                return flowable.onBackpressureDrop();
+            case LATEST:
+                return flowable.onBackpressureLatest();
+            case ERROR:
+                return flowable.toObservable().toFlowable(BackpressureStrategy.ERROR);
+            default:
+                return flowable;
+        }
+    }
+
+    /**
+     * Collects the options of a command, see {@link #builder(RxCommand.Func)}.
+     */
+    public static final class Builder<T> {
+
+        private final RxCommand.Func<Object, Flowable<T>> mFunc;
+
+        private Observable<Boolean> mEnabled;
+
+        private Scheduler mWorkScheduler;
+
+        private Scheduler mDeliveryScheduler;
+
+        private boolean mAllowsConcurrentExecution;
+
+        private ReplayPolicy mReplayPolicy = ReplayPolicy.DEFAULT;
+
+        private BackpressureStrategy mValuesStrategy = BackpressureStrategy.MISSING;
+
+        private BackpressureStrategy mExecutionsStrategy = BackpressureStrategy.BUFFER;
+
+        private BackpressureStrategy mErrorsStrategy = BackpressureStrategy.BUFFER;
+
+        private BackpressureStrategy mStatesStrategy = BackpressureStrategy.LATEST;
+
+        Builder(@NonNull RxCommand.Func<Object, Flowable<T>> func) {
+            if (func == null) {
+                throw new NullPointerException("func is null");
+            }
+            mFunc = func;
+        }
+
+        /**
+         * see {@link RxCommand.Builder#enabled(Observable)}
+         */
+        public Builder<T> enabled(@Nullable Observable<Boolean> enabled) {
+            mEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * see {@link RxCommand.Builder#workScheduler(Scheduler)}
+         */
+        public Builder<T> workScheduler(@NonNull Scheduler scheduler) {
+            if (scheduler == null) {
+                throw new NullPointerException("scheduler is null");
+            }
+            mWorkScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * see {@link RxCommand.Builder#deliveryScheduler(Scheduler)}
+         */
+        public Builder<T> deliveryScheduler(@NonNull Scheduler scheduler) {
+            if (scheduler == null) {
+                throw new NullPointerException("scheduler is null");
+            }
+            mDeliveryScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * see {@link RxCommand#allowsConcurrentExecution()}
+         */
+        public Builder<T> allowsConcurrentExecution(boolean allows) {
+            mAllowsConcurrentExecution = allows;
+            return this;
+        }
+
+        /**
+         * see {@link RxCommand#replayPolicy()}
+         */
+        public Builder<T> replayPolicy(@NonNull ReplayPolicy policy) {
+            if (policy == null) {
+                throw new NullPointerException("policy is null");
+            }
+            mReplayPolicy = policy;
+            return this;
+        }
+
+        /**
+         * How the values of each execution are handled when they are sent faster than requested.
+         * Defaults to {@link BackpressureStrategy#MISSING}, leaving it to the flowable returned
+         * by `func`.
+         */
+        public Builder<T> valuesBackpressure(@NonNull BackpressureStrategy strategy) {
+            mValuesStrategy = checkStrategy(strategy);
+            return this;
+        }
+
+        /**
+         * How {@link #executionFlowables()} handles executions started faster than they are
+         * requested. Defaults to {@link BackpressureStrategy#BUFFER}.
+         */
+        public Builder<T> executionsBackpressure(@NonNull BackpressureStrategy strategy) {
+            mExecutionsStrategy = checkStrategy(strategy);
+            return this;
+        }
+
+        /**
+         * How {@link #errors()} handles errors sent faster than they are requested. Defaults to
+         * {@link BackpressureStrategy#BUFFER}.
+         */
+        public Builder<T> errorsBackpressure(@NonNull BackpressureStrategy strategy) {
+            mErrorsStrategy = checkStrategy(strategy);
+            return this;
+        }
+
+        /**
+         * How {@link #executing()} and {@link #enabled()} handle states changing faster than they
+         * are requested. Defaults to {@link BackpressureStrategy#LATEST}.
+         */
+        public Builder<T> statesBackpressure(@NonNull BackpressureStrategy strategy) {
+            mStatesStrategy = checkStrategy(strategy);
+            return this;
+        }
+
+        public FlowableCommand<T> build() {
+            return new FlowableCommand<>(this);
+        }
+
+        private static BackpressureStrategy checkStrategy(BackpressureStrategy strategy) {
+            if (strategy == null) {
+                throw new NullPointerException("strategy is null");
+            }
+            return strategy;
+        }
+    }
+
+    /**
+     * Sits between the flowable returned by `func` and its multicast, forwards errors to
+     * {@link #errors()} and ends the execution on the first terminal event or cancellation.
+     */
+    private final class Execution extends AtomicBoolean implements FlowableOperator<T, T>, Subscriber<T>, Subscription {
+
+        private static final long serialVersionUID = 7416982593251098043L;
+
+        private Subscriber<? super T> mDownstream;
+
+        private Subscription mUpstream;
+
+        @Override
+        public Subscriber<? super T> apply(@NonNull Subscriber<? super T> subscriber) {
+            mDownstream = subscriber;
+            return this;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            mUpstream = s;
+            mDownstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(T t) {
+            mDownstream.onNext(t);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if (terminate()) {
+                mErrorsSubject.onNext(e);
+            }
+            mDownstream.onError(e);
+        }
+
+        @Override
+        public void onComplete() {
+            terminate();
+            mDownstream.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            mUpstream.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            mUpstream.cancel();
+            terminate();
+        }
+
+        private boolean terminate() {
+            if (compareAndSet(false, true)) {
+                mExecutionState.terminated();
+                return true;
+            }
+            return false;
+        }
+    }
+}
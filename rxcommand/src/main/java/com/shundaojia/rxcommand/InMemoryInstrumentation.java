@@ -0,0 +1,273 @@
+package com.shundaojia.rxcommand;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+
+/**
+ * Keeps the metrics of every command in memory, see {@link #metrics(String)}. Useful to assert
+ * against in tests, or to report periodically.
+ * <p>
+ * Counters are striped, and durations are counted in histograms with a fixed number of
+ * buckets, so recording allocates nothing, except the first time a command fails with a new
+ * class of error. Commands with the same name share their metrics.
+ */
+public final class InMemoryInstrumentation implements CommandInstrumentation {
+
+    private final ConcurrentHashMap<String, Metrics> mMetrics = new ConcurrentHashMap<>();
+
+    @NonNull
+    @Override
+    public Metrics recorder(@NonNull String command) {
+        Metrics metrics = mMetrics.get(command);
+        if (metrics == null) {
+            Metrics created = new Metrics();
+            metrics = mMetrics.putIfAbsent(command, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * @return the metrics of the commands named `command`, or null if there is none
+     */
+    @Nullable
+    public Metrics metrics(@NonNull String command) {
+        return mMetrics.get(command);
+    }
+
+    /**
+     * The metrics of one command.
+     */
+    public static final class Metrics implements Recorder {
+
+        private final StripedCounter mStarted = new StripedCounter();
+
+        private final StripedCounter mCompleted = new StripedCounter();
+
+        private final StripedCounter mFailed = new StripedCounter();
+
+        private final StripedCounter mCancelled = new StripedCounter();
+
+        private final StripedCounter mRejected = new StripedCounter();
+
+        private final AtomicInteger mPeakConcurrency = new AtomicInteger();
+
+        private final ConcurrentHashMap<Class<?>, AtomicLong> mErrors = new ConcurrentHashMap<>();
+
+        private final Histogram mDuration = new Histogram();
+
+        private final Histogram mTimeToFirstValue = new Histogram();
+
+        Metrics() {
+        }
+
+        /**
+         * The number of executions started.
+         */
+        public long executionCount() {
+            return mStarted.sum();
+        }
+
+        public long completedCount() {
+            return mCompleted.sum();
+        }
+
+        public long failedCount() {
+            return mFailed.sum();
+        }
+
+        /**
+         * The number of executions disposed or cancelled before they terminated.
+         */
+        public long cancelledCount() {
+            return mCancelled.sum();
+        }
+
+        /**
+         * The number of calls that failed because the command was disabled.
+         */
+        public long rejectedCount() {
+            return mRejected.sum();
+        }
+
+        /**
+         * The highest number of executions seen running at the same time.
+         */
+        public int peakConcurrency() {
+            return mPeakConcurrency.get();
+        }
+
+        /**
+         * The share of the executions that failed, among those that terminated, or 0 if none did.
+         */
+        public double errorRate() {
+            long failed = mFailed.sum();
+            long terminated = failed + mCompleted.sum() + mCancelled.sum();
+            return terminated == 0 ? 0 : (double) failed / terminated;
+        }
+
+        /**
+         * The number of executions that failed with an error of exactly the class `type`.
+         */
+        public long errorCount(@NonNull Class<? extends Throwable> type) {
+            AtomicLong count = mErrors.get(type);
+            return count != null ? count.get() : 0;
+        }
+
+        /**
+         * The number of failed executions, by the class of their error.
+         */
+        public Map<Class<?>, Long> errorCounts() {
+            Map<Class<?>, Long> counts = new HashMap<>();
+            for (Map.Entry<Class<?>, AtomicLong> entry : mErrors.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().get());
+            }
+            return counts;
+        }
+
+        /**
+         * How long terminated executions ran, cancelled ones included.
+         */
+        public Histogram duration() {
+            return mDuration;
+        }
+
+        /**
+         * How long executions took to send their first value.
+         */
+        public Histogram timeToFirstValue() {
+            return mTimeToFirstValue;
+        }
+
+        @Override
+        public void started(int running) {
+            mStarted.increment();
+            for (; ; ) {
+                int peak = mPeakConcurrency.get();
+                if (running <= peak || mPeakConcurrency.compareAndSet(peak, running)) {
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public void firstValue(long nanos) {
+            mTimeToFirstValue.record(nanos);
+        }
+
+        @Override
+        public void completed(long nanos) {
+            mCompleted.increment();
+            mDuration.record(nanos);
+        }
+
+        @Override
+        public void failed(@NonNull Throwable error, long nanos) {
+            mFailed.increment();
+            mDuration.record(nanos);
+            AtomicLong count = mErrors.get(error.getClass());
+            if (count == null) {
+                AtomicLong created = new AtomicLong();
+                count = mErrors.putIfAbsent(error.getClass(), created);
+                if (count == null) {
+                    count = created;
+                }
+            }
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void cancelled(long nanos) {
+            mCancelled.increment();
+            mDuration.record(nanos);
+        }
+
+        @Override
+        public void rejected() {
+            mRejected.increment();
+        }
+    }
+
+    /**
+     * Durations counted in buckets of powers of two nanoseconds: bucket `i` counts the
+     * durations shorter than 2^i nanoseconds and not counted by bucket `i - 1`.
+     */
+    public static final class Histogram {
+
+        /**
+         * The number of buckets, enough for any duration.
+         */
+        public static final int BUCKETS = 64;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+
+        Histogram() {
+        }
+
+        void record(long nanos) {
+            int bucket = nanos <= 0 ? 0 : Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1);
+            mBuckets.incrementAndGet(bucket);
+        }
+
+        /**
+         * The number of durations counted by bucket `i`.
+         */
+        public long bucket(int i) {
+            return mBuckets.get(i);
+        }
+
+        /**
+         * The number of durations counted.
+         */
+        public long count() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += mBuckets.get(i);
+            }
+            return count;
+        }
+
+        /**
+         * An upper bound of the `percentile` of the durations counted, at most twice the
+         * actual value, or 0 if none was.
+         *
+         * @param percentile between 0 and 100
+         * @param unit       the unit of the returned duration
+         */
+        public long percentile(double percentile, @NonNull TimeUnit unit) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile in [0, 100] required but it was " + percentile);
+            }
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = mBuckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            int i = 0;
+            for (; i < BUCKETS - 1; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    break;
+                }
+            }
+            long nanos = i == 0 ? 0 : i >= 63 ? Long.MAX_VALUE : (1L << i) - 1;
+            return unit.convert(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.shundaojia.rxcommand;
+
+/**
+ * What a command does with a call to {@link RxCommand#execute(Object)} while its execution queue
+ * is full, see {@link RxCommand.Builder#queue(int, QueueOverflow)}.
+ */
+public enum QueueOverflow {
+
+    /**
+     * The oldest waiting call is dropped to make room, its observable completes without values.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The new call is dropped, its observable completes without values.
+     */
+    DROP_NEWEST,
+
+    /**
+     * The new call is rejected, its observable sends an {@link IllegalStateException}.
+     * {@link RxCommand#enabled()} sends false while the queue is full.
+     */
+    REJECT
+}
@@ -0,0 +1,200 @@
+package com.shundaojia.rxcommand;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Observer;
+import io.reactivex.Scheduler;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.SerialDisposable;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.flowables.ConnectableFlowable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.observables.ConnectableObservable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+
+/**
+ * How the observable returned by {@link RxCommand#execute(Object)} replays the values of an
+ * execution to observers that subscribe after they were sent.
+ * <p>
+ * The returned observable is kept alive by whoever references it, and so are the values it
+ * replays. Unless every value is really needed by late observers, prefer a bounded policy.
+ * Terminal events are replayed as well, except by {@link #none()} for a {@link FlowableCommand}.
+ */
+public abstract class ReplayPolicy {
+
+    /**
+     * The size of {@link #DEFAULT}.
+     */
+    public static final int DEFAULT_SIZE = 128;
+
+    /**
+     * The policy used by a command unless another one is set, {@link #last(int)} with
+     * {@link #DEFAULT_SIZE}.
+     */
+    public static final ReplayPolicy DEFAULT = last(DEFAULT_SIZE);
+
+    private static final ReplayPolicy NONE = new ReplayPolicy() {
+        @Override
+        <T> ConnectableObservable<T> apply(Observable<T> source) {
+            return new NoReplay<>(source);
+        }
+
+        @Override
+        <T> ConnectableFlowable<T> apply(Flowable<T> source) {
+            return source.publish();
+        }
+    };
+
+    private static final ReplayPolicy ALL = new ReplayPolicy() {
+        @Override
+        <T> ConnectableObservable<T> apply(Observable<T> source) {
+            return source.replay();
+        }
+
+        @Override
+        <T> ConnectableFlowable<T> apply(Flowable<T> source) {
+            return source.replay();
+        }
+    };
+
+    ReplayPolicy() {
+    }
+
+    /**
+     * Values are not replayed, late observers only receive what is sent after they subscribed.
+     * <p>
+     * For a {@link FlowableCommand} this is {@link Flowable#publish()}: values are requested at
+     * the pace of the slowest subscriber, values sent while there is none are dropped, and
+     * subscribers arriving after the execution terminated receive nothing.
+     */
+    public static ReplayPolicy none() {
+        return NONE;
+    }
+
+    /**
+     * Replays at most the last `count` values.
+     *
+     * @param count the maximum number of values kept, must be positive
+     */
+    public static ReplayPolicy last(final int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count > 0 required but it was " + count);
+        }
+        return new ReplayPolicy() {
+            @Override
+            <T> ConnectableObservable<T> apply(Observable<T> source) {
+                return source.replay(count);
+            }
+
+            @Override
+            <T> ConnectableFlowable<T> apply(Flowable<T> source) {
+                return source.replay(count);
+            }
+        };
+    }
+
+    /**
+     * Replays the values sent during the last `time`, measured by the computation scheduler.
+     *
+     * @param time the age after which a value is no longer replayed
+     * @param unit the unit of `time`
+     */
+    public static ReplayPolicy window(long time, @NonNull TimeUnit unit) {
+        return window(time, unit, Schedulers.computation());
+    }
+
+    /**
+     * Replays the values sent during the last `time`, measured by `scheduler`.
+     *
+     * @param time      the age after which a value is no longer replayed
+     * @param unit      the unit of `time`
+     * @param scheduler the scheduler providing the current time
+     */
+    public static ReplayPolicy window(final long time, @NonNull final TimeUnit unit, @NonNull final Scheduler scheduler) {
+        return new ReplayPolicy() {
+            @Override
+            <T> ConnectableObservable<T> apply(Observable<T> source) {
+                return source.replay(time, unit, scheduler);
+            }
+
+            @Override
+            <T> ConnectableFlowable<T> apply(Flowable<T> source) {
+                return source.replay(time, unit, scheduler);
+            }
+        };
+    }
+
+    /**
+     * Replays every value, for as long as the returned observable is referenced.
+     */
+    public static ReplayPolicy all() {
+        return ALL;
+    }
+
+    abstract <T> ConnectableObservable<T> apply(Observable<T> source);
+
+    abstract <T> ConnectableFlowable<T> apply(Flowable<T> source);
+
+    /**
+     * Like {@link Observable#publish()}, except that observers subscribing after the source has
+     * terminated still receive the terminal event.
+     */
+    private static final class NoReplay<T> extends ConnectableObservable<T> {
+
+        private final Observable<T> mSource;
+
+        private final Subject<T> mSubject = PublishSubject.create();
+
+        private final SerialDisposable mConnection = new SerialDisposable();
+
+        private final AtomicBoolean mConnected = new AtomicBoolean();
+
+        NoReplay(Observable<T> source) {
+            mSource = source;
+        }
+
+        @Override
+        public void connect(@NonNull Consumer<? super Disposable> connection) {
+            try {
+                connection.accept(mConnection);
+            } catch (Throwable e) {
+                Exceptions.throwIfFatal(e);
+                throw Exceptions.propagate(e);
+            }
+            if (mConnected.compareAndSet(false, true)) {
+                mSource.subscribe(new Observer<T>() {
+                    @Override
+                    public void onSubscribe(@NonNull Disposable d) {
+                        mConnection.set(d);
+                    }
+
+                    @Override
+                    public void onNext(@NonNull T t) {
+                        mSubject.onNext(t);
+                    }
+
+                    @Override
+                    public void onError(@NonNull Throwable e) {
+                        mSubject.onError(e);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        mSubject.onComplete();
+                    }
+                });
+            }
+        }
+
+        @Override
+        protected void subscribeActual(Observer<? super T> observer) {
+            mSubject.subscribe(observer);
+        }
+    }
+}
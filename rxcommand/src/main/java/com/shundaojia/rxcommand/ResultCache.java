@@ -0,0 +1,182 @@
+package com.shundaojia.rxcommand;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Scheduler;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.annotations.Nullable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * The values of completed executions of a command, keyed by the input passed to
+ * {@link RxCommand#execute(Object)}, see {@link RxCommand.Builder#cache(ResultCache)}.
+ * <p>
+ * Only executions that complete are cached, an execution that fails or is disposed is run again
+ * by the next call. Inputs are compared with {@link Object#equals(Object)}, and every value of a
+ * cached execution is kept, so prefer inputs and results of moderate size.
+ */
+public final class ResultCache<T> {
+
+    /**
+     * Keep the results of at most `maxSize` inputs, evicting the least recently used one.
+     *
+     * @param maxSize the maximum number of cached inputs, must be positive
+     */
+    public static <T> ResultCache<T> create(int maxSize) {
+        return new ResultCache<>(maxSize, Long.MAX_VALUE, Schedulers.computation());
+    }
+
+    /**
+     * Keep the results of at most `maxSize` inputs, for `ttl` after their execution completed,
+     * measured by the computation scheduler.
+     *
+     * @param maxSize the maximum number of cached inputs, must be positive
+     * @param ttl     how long a result is served from the cache
+     * @param unit    the unit of `ttl`
+     */
+    public static <T> ResultCache<T> create(int maxSize, long ttl, @NonNull TimeUnit unit) {
+        return create(maxSize, ttl, unit, Schedulers.computation());
+    }
+
+    /**
+     * Keep the results of at most `maxSize` inputs, for `ttl` after their execution completed,
+     * measured by `scheduler`.
+     *
+     * @param maxSize   the maximum number of cached inputs, must be positive
+     * @param ttl       how long a result is served from the cache
+     * @param unit      the unit of `ttl`
+     * @param scheduler the scheduler providing the current time
+     */
+    public static <T> ResultCache<T> create(int maxSize, long ttl, @NonNull TimeUnit unit, @NonNull Scheduler scheduler) {
+        if (unit == null) {
+            throw new NullPointerException("unit is null");
+        }
+        if (scheduler == null) {
+            throw new NullPointerException("scheduler is null");
+        }
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl > 0 required but it was " + ttl);
+        }
+        return new ResultCache<>(maxSize, unit.toMillis(ttl), scheduler);
+    }
+
+    private final long mTtlMillis;
+
+    private final Scheduler mClock;
+
+    /**
+     * In access order, guarded by itself.
+     */
+    private final LinkedHashMap<Object, Entry<T>> mEntries;
+
+    private final AtomicLong mHits = new AtomicLong();
+
+    private final AtomicLong mMisses = new AtomicLong();
+
+    private ResultCache(final int maxSize, long ttlMillis, Scheduler clock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize > 0 required but it was " + maxSize);
+        }
+        mTtlMillis = ttlMillis;
+        mClock = clock;
+        mEntries = new LinkedHashMap<Object, Entry<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry<T>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * The number of calls served from the cache.
+     */
+    public long hitCount() {
+        return mHits.get();
+    }
+
+    /**
+     * The number of calls that ran the command's `func` because their input was not cached.
+     */
+    public long missCount() {
+        return mMisses.get();
+    }
+
+    /**
+     * The number of cached inputs, including the expired ones not yet evicted.
+     */
+    public int size() {
+        synchronized (mEntries) {
+            return mEntries.size();
+        }
+    }
+
+    /**
+     * Forgets the result of `input`, the next call with it runs the command's `func`.
+     */
+    public void invalidate(@Nullable Object input) {
+        synchronized (mEntries) {
+            mEntries.remove(input);
+        }
+    }
+
+    /**
+     * Forgets every result.
+     */
+    public void invalidateAll() {
+        synchronized (mEntries) {
+            mEntries.clear();
+        }
+    }
+
+    /**
+     * @return the values of the cached execution of `input`, counting a hit, or null. Misses are
+     * counted by {@link #missed()}, once the call actually runs `func`.
+     */
+    @Nullable
+    List<T> get(@Nullable Object input) {
+        long now = mClock.now(TimeUnit.MILLISECONDS);
+        List<T> values = null;
+        synchronized (mEntries) {
+            Entry<T> entry = mEntries.get(input);
+            if (entry != null) {
+                if (now - entry.mTime < mTtlMillis) {
+                    values = entry.mValues;
+                } else {
+                    mEntries.remove(input);
+                }
+            }
+        }
+        if (values != null) {
+            mHits.incrementAndGet();
+        }
+        return values;
+    }
+
+    void missed() {
+        mMisses.incrementAndGet();
+    }
+
+    void put(@Nullable Object input, @NonNull List<T> values) {
+        Entry<T> entry = new Entry<>(Collections.unmodifiableList(values), mClock.now(TimeUnit.MILLISECONDS));
+        synchronized (mEntries) {
+            mEntries.put(input, entry);
+        }
+    }
+
+    private static final class Entry<T> {
+
+        private final List<T> mValues;
+
+        private final long mTime;
+
+        Entry(List<T> values, long time) {
+            mValues = values;
+            mTime = time;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.shundaojia.rxcommand;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.functions.Predicate;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * How a command retries a failed execution, see {@link RxCommand.Builder#retry(RetryPolicy)}.
+ * <p>
+ * A failed attempt resubscribes to the observable returned by `func`, `func` itself is not
+ * called again. Attempts are delayed by an exponential backoff: the first retry waits the
+ * initial delay, every following one twice as long as the previous one, up to the maximum
+ * delay. The failures of the attempts that are retried are not sent to anyone, only the
+ * failure of the last attempt reaches {@link RxCommand#errors()}.
+ */
+public final class RetryPolicy {
+
+    /**
+     * Collect the options of a policy making at most `maxAttempts` attempts, the first one
+     * included. Attempts are retried right away unless a backoff is set.
+     *
+     * @param maxAttempts the maximum number of attempts, must be positive
+     */
+    public static Builder builder(int maxAttempts) {
+        return new Builder(maxAttempts);
+    }
+
+    private final int mMaxAttempts;
+
+    private final long mInitialDelayMillis;
+
+    private final long mMaxDelayMillis;
+
+    private final double mJitter;
+
+    private final Predicate<? super Throwable> mRetryIf;
+
+    private final Scheduler mScheduler;
+
+    private final Random mRandom = new Random();
+
+    private RetryPolicy(Builder builder) {
+        mMaxAttempts = builder.mMaxAttempts;
+        mInitialDelayMillis = builder.mInitialDelayMillis;
+        mMaxDelayMillis = builder.mMaxDelayMillis;
+        mJitter = builder.mJitter;
+        mRetryIf = builder.mRetryIf;
+        mScheduler = builder.mScheduler;
+    }
+
+    /**
+     * The maximum number of attempts of an execution, the first one included.
+     */
+    public int maxAttempts() {
+        return mMaxAttempts;
+    }
+
+    /**
+     * Retries `source` as long as this policy allows, counting every retry in `attempts`.
+     *
+     * @param workScheduler the scheduler `source` is resubscribed on
+     */
+    <T> Observable<T> apply(Observable<T> source, final AtomicLong attempts, final Scheduler workScheduler) {
+        return source.retryWhen(errors -> {
+            // called once per execution, errors are sent one at a time
+            final int[] attempt = {1};
+            return errors.flatMap(error -> {
+                if (attempt[0] >= mMaxAttempts || !mRetryIf.test(error)) {
+                    return Observable.error(error);
+                }
+                long delay = delayMillis(attempt[0]++);
+                return Observable.timer(delay, TimeUnit.MILLISECONDS, mScheduler)
+                        .observeOn(workScheduler)
+                        .doOnNext(tick -> attempts.incrementAndGet());
+            });
+        });
+    }
+
+    /**
+     * @param attempt the number of the attempt that failed, starting at 1
+     */
+    long delayMillis(int attempt) {
+        long delay = mInitialDelayMillis;
+        for (int i = 1; i < attempt && delay < mMaxDelayMillis; i++) {
+            delay = delay > mMaxDelayMillis / 2 ? mMaxDelayMillis : delay * 2;
+        }
+        delay = Math.min(delay, mMaxDelayMillis);
+        if (mJitter > 0) {
+            delay -= (long) (delay * mJitter * mRandom.nextDouble());
+        }
+        return delay;
+    }
+
+    /**
+     * Collects the options of a policy, see {@link #builder(int)}.
+     */
+    public static final class Builder {
+
+        private final int mMaxAttempts;
+
+        private long mInitialDelayMillis;
+
+        private long mMaxDelayMillis = Long.MAX_VALUE;
+
+        private double mJitter;
+
+        private Predicate<? super Throwable> mRetryIf = error -> true;
+
+        private Scheduler mScheduler = Schedulers.computation();
+
+        Builder(int maxAttempts) {
+            if (maxAttempts <= 0) {
+                throw new IllegalArgumentException("maxAttempts > 0 required but it was " + maxAttempts);
+            }
+            mMaxAttempts = maxAttempts;
+        }
+
+        /**
+         * Wait `initialDelay` before the first retry, and double the delay for every following
+         * one, without exceeding `maxDelay`.
+         */
+        public Builder backoff(long initialDelay, long maxDelay, @NonNull TimeUnit unit) {
+            if (unit == null) {
+                throw new NullPointerException("unit is null");
+            }
+            if (initialDelay < 0) {
+                throw new IllegalArgumentException("initialDelay >= 0 required but it was " + initialDelay);
+            }
+            if (maxDelay < initialDelay) {
+                throw new IllegalArgumentException("maxDelay >= initialDelay required but it was " + maxDelay);
+            }
+            mInitialDelayMillis = unit.toMillis(initialDelay);
+            mMaxDelayMillis = unit.toMillis(maxDelay);
+            return this;
+        }
+
+        /**
+         * Shorten every delay by a random part of up to `jitter` of it, so that the commands
+         * failing together do not all retry together. Defaults to 0.
+         *
+         * @param jitter between 0 and 1
+         */
+        public Builder jitter(double jitter) {
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("jitter in [0, 1] required but it was " + jitter);
+            }
+            mJitter = jitter;
+            return this;
+        }
+
+        /**
+         * Only retry the failures `predicate` accepts, the others fail the execution right away.
+         * Defaults to retrying every failure.
+         */
+        public Builder retryIf(@NonNull Predicate<? super Throwable> predicate) {
+            if (predicate == null) {
+                throw new NullPointerException("predicate is null");
+            }
+            mRetryIf = predicate;
+            return this;
+        }
+
+        /**
+         * The scheduler measuring the delays, attempts still run on the command's work
+         * scheduler. Defaults to {@link Schedulers#computation()}.
+         */
+        public Builder scheduler(@NonNull Scheduler scheduler) {
+            if (scheduler == null) {
+                throw new NullPointerException("scheduler is null");
+            }
+            mScheduler = scheduler;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
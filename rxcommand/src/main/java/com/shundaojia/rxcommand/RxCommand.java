@@ -2,12 +2,32 @@ package com.shundaojia.rxcommand;
 
 import android.support.annotation.MainThread;
 
-import io.reactivex.Notification;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import io.reactivex.Observable;
+import io.reactivex.ObservableOperator;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Observer;
+import io.reactivex.Scheduler;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.annotations.NonNull;
 import io.reactivex.annotations.Nullable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.functions.Function;
 import io.reactivex.observables.ConnectableObservable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.AsyncSubject;
 import io.reactivex.subjects.PublishSubject;
 import io.reactivex.subjects.Subject;
 
@@ -29,43 +49,182 @@ public class RxCommand<T> {
         return new RxCommand<>(enabled, function);
     }
 
+    /**
+     * Start building a command whose options are fixed at creation time, such as its schedulers.
+     *
+     * @param function see {@link #RxCommand(Observable, Func)}
+     */
+    public static <T> Builder<T> builder(@NonNull Func<Object, Observable<T>> function) {
+        return new Builder<>(function);
+    }
+
     private final Func<Object, Observable<T>> mFunc;
 
+    /**
+     * The scheduler executions are subscribed on, see {@link Builder#workScheduler(Scheduler)}
+     */
+    private final Scheduler mWorkScheduler;
+
+    /**
+     * The scheduler outputs are observed on, see {@link Builder#deliveryScheduler(Scheduler)}
+     */
+    private final Scheduler mDeliveryScheduler;
+
+    /**
+     * How {@link #executing()} and {@link #enabled()} are moved to the delivery scheduler,
+     * see {@link Builder#stateDispatcher(CoalescingDispatcher)}
+     */
+    private final ObservableTransformer<Boolean, Boolean> mStateDelivery;
+
     private final Subject<Observable<T>> mAddedExecutionObservableSubject;
 
-    private final Subject<Boolean> mAllowsConcurrentExecutionSubject;
+    /**
+     * Errors of all executions, sent by their {@link Execution}.
+     */
+    private final Subject<Throwable> mErrorsSubject;
+
+    /**
+     * The executions that have been connected and not yet terminated.
+     */
+    private final ExecutionState mExecutionState;
+
+    /**
+     * Calls waiting for a running execution to terminate, guarded by itself. Null unless the
+     * command was built with {@link Builder#queue(int, QueueOverflow)}.
+     */
+    private final ArrayDeque<PendingExecution> mQueue;
+
+    private final int mQueueCapacity;
+
+    private final QueueOverflow mQueueOverflow;
+
+    /**
+     * Serializes {@link #drainQueue()}, so that executions terminating synchronously while
+     * started from the queue do not recurse.
+     */
+    private final AtomicInteger mQueueWip = new AtomicInteger();
+
+    /**
+     * Calls taken off {@link #mQueue} together with the slot of a terminated execution.
+     */
+    private final Queue<PendingExecution> mHandedOff = new ConcurrentLinkedQueue<>();
+
+    /*
+     * The output streams below are assembled on first access, most commands only ever have
+     * one or two of them observed.
+     */
 
     /**
      * see {@link #executionObservables()}
      */
-    private final Observable<Observable<T>> mExecutionObservables;
+    private volatile Observable<Observable<T>> mExecutionObservables;
 
     /**
      * see {@link #switchToLatest()}
      */
-    private final Observable<T> mLatestObservable;
+    private volatile Observable<T> mLatestObservable;
 
     /**
      * see {@link #errors()}
      */
-    private final Observable<Throwable> mErrors;
+    private volatile Observable<Throwable> mErrors;
 
     /**
      * see {@link #executing()}
      */
-    private final Observable<Boolean> mExecuting;
+    private volatile Observable<Boolean> mExecuting;
 
-    private final ConnectableObservable<Boolean> mImmediateEnabled;
+    /**
+     * Whether the command is enabled, sent synchronously. Without an `enabledObservable` this is
+     * {@link ExecutionState#moreExecutionsAllowed()} itself, otherwise it is combined with the
+     * `enabledObservable` and connected right away to keep {@link #mEnabledValue} up to date.
+     */
+    private final Observable<Boolean> mImmediateEnabled;
 
     /**
      * see {@link #enabled()}
      */
-    private final Observable<Boolean> mEnabled;
+    private volatile Observable<Boolean> mEnabled;
 
     /**
-     * see {@link #allowsConcurrentExecution()}
+     * The latest value of the `enabledObservable`, read by {@link #isImmediatelyEnabled()}
+     * without subscribing. Defaults to true before any value is sent, and stays true without an
+     * `enabledObservable`.
+     */
+    private volatile boolean mEnabledValue = true;
+
+    /**
+     * see {@link #replayPolicy()}
+     */
+    private volatile ReplayPolicy mReplayPolicy;
+
+    /**
+     * see {@link #cache()}
+     */
+    private final ResultCache<T> mCache;
+
+    /**
+     * The running executions keyed by input, guarded by itself. Null unless the command was
+     * built with {@link Builder#singleFlight(boolean)}.
      */
-    private volatile boolean mAllowsConcurrentExecution;
+    private final HashMap<Object, Execution> mInFlight;
+
+    /**
+     * Null unless the command was built with {@link Builder#throttle(ThrottlePolicy)}.
+     */
+    private final Throttle<T> mThrottle;
+
+    /**
+     * How long an attempt may run, 0 for no timeout, see {@link Builder#timeout(long, TimeUnit)}.
+     */
+    private final long mTimeoutMillis;
+
+    private final Scheduler mTimeoutScheduler;
+
+    /**
+     * see {@link #retryPolicy()}
+     */
+    private final RetryPolicy mRetryPolicy;
+
+    /**
+     * see {@link #attemptCount()}
+     */
+    private final AtomicLong mAttempts = new AtomicLong();
+
+    /**
+     * see {@link #name()}
+     */
+    private final String mName;
+
+    /**
+     * Null unless the command was built with
+     * {@link Builder#instrumentation(CommandInstrumentation)}.
+     */
+    private final CommandInstrumentation.Recorder mRecorder;
+
+    /**
+     * see {@link #group()}
+     */
+    private final CommandGroup mGroup;
+
+    /**
+     * Null unless the command was built with {@link Builder#tracer(CommandTracer)}.
+     */
+    private final CommandTracer mTracer;
+
+    /**
+     * Numbers the traced executions.
+     */
+    private final AtomicInteger mExecutionIds = new AtomicInteger();
+
+    /**
+     * Guards the list of running executions, oldest first, see {@link Execution#mNext}.
+     */
+    private final Object mRunningLock = new Object();
+
+    private Execution mFirstRunning;
+
+    private Execution mLastRunning;
 
     /**
      * create a command that is conditionally enabled.
@@ -76,84 +235,12 @@ public class RxCommand<T> {
      *                          default to true. This argument may be null.
      * @param func              - A function which will map each input value (passed to {@link #execute(Object)})
      *                          to a observable of work. The returned observable will be multicasted
-     *                          to a replay subject, sent on {@link #executionObservables()}, then
+     *                          according to {@link #replayPolicy()}, sent on {@link #executionObservables()}, then
      *                          subscribed to synchronously. Neither the function nor the
      *                          returned observable may be null.
      */
     public RxCommand(@Nullable Observable<Boolean> enabledObservable, @NonNull Func<Object, Observable<T>> func) {
-
-        mAddedExecutionObservableSubject = PublishSubject.create();
-        mAllowsConcurrentExecutionSubject = PublishSubject.create();
-        mFunc =func;
-
-        mExecutionObservables = mAddedExecutionObservableSubject
-                .map(observable -> observable.onErrorResumeNext(Observable.<T>empty()))
-                .observeOn(AndroidSchedulers.mainThread());
-
-        mLatestObservable = Observable
-                .switchOnNext(mExecutionObservables)
-                .publish()
-                .autoConnect();
-
-        mErrors = mAddedExecutionObservableSubject
-                .flatMap(observable -> observable
-                        .materialize()
-                        .filter(Notification::isOnError)
-                        .map(Notification::getError)
-                )
-                .observeOn(AndroidSchedulers.mainThread())
-                // if someone subscribes to `errors` _after_ an execution
-                // has started, it should still receive any error from that execution.
-                .publish()
-                .autoConnect();
-
-        Observable<Boolean> immediateExecuting = mAddedExecutionObservableSubject
-                .flatMap(observable -> observable
-                        .ignoreElements()
-                        .toMaybe()
-                        .toObservable()
-                        .onErrorResumeNext(Observable.<T>empty())
-                        .concatWith(Observable.just(-1))
-                        .startWith(1)
-                        .cast(Integer.class))
-                .scan(0, (running, next) -> running + next)
-                .map(count -> count > 0)
-                .startWith(false);
-
-        mExecuting = immediateExecuting
-                .observeOn(AndroidSchedulers.mainThread())
-                // This is useful before the first value arrives on the main thread.
-                .startWith(false)
-                .distinctUntilChanged()
-                .replay(1)
-                .autoConnect();
-
-        Observable<Boolean> moreExecutionsAllowed = Observable
-                .combineLatest(
-                        mAllowsConcurrentExecutionSubject.startWith(false),
-                        immediateExecuting,
-                        (allowedConcurrent, executing) -> allowedConcurrent || !executing)
-                .distinctUntilChanged()
-                .replay(1)
-                .autoConnect();
-
-        if (enabledObservable == null) {
-            enabledObservable = Observable.just(true);
-        }
-
-        mImmediateEnabled = Observable
-                .combineLatest(enabledObservable, moreExecutionsAllowed, (enabled, allowed) -> enabled && allowed)
-                .distinctUntilChanged()
-                .replay(1);
-        // since `mImmediateEnabled` is not export, we must trigger this stream manually
-        mImmediateEnabled.connect();
-
-        mEnabled = Observable
-                .concat(mImmediateEnabled.take(1),
-                        mImmediateEnabled.skip(1).observeOn(AndroidSchedulers.mainThread()))
-                .distinctUntilChanged()
-                .replay(1)
-                .autoConnect();
+        this(new Builder<>(func).enabled(enabledObservable));
     }
 
     /**
@@ -165,14 +252,180 @@ public class RxCommand<T> {
         this(null, func);
     }
 
+    /**
+     * create a command with the options collected by `builder`.
+     *
+     * @param builder see {@link #builder(Func)}
+     */
+    protected RxCommand(@NonNull Builder<T> builder) {
+
+        mAddedExecutionObservableSubject = PublishSubject.create();
+        mErrorsSubject = PublishSubject.<Throwable>create().toSerialized();
+        mFunc = builder.mFunc;
+        mWorkScheduler = builder.mWorkScheduler != null ? builder.mWorkScheduler : AndroidSchedulers.mainThread();
+        mDeliveryScheduler = builder.mDeliveryScheduler != null ? builder.mDeliveryScheduler : AndroidSchedulers.mainThread();
+        mStateDelivery = builder.mStateDispatcher != null
+                ? builder.mStateDispatcher.coalesce()
+                : upstream -> upstream.observeOn(mDeliveryScheduler);
+        mExecutionState = new ExecutionState(builder.mMaxConcurrency);
+        mQueueCapacity = builder.mQueueCapacity;
+        mQueueOverflow = builder.mQueueOverflow;
+        mQueue = mQueueCapacity > 0 ? new ArrayDeque<>() : null;
+        if (mQueue != null) {
+            mExecutionState.setQueueAccepting(true);
+        }
+        mReplayPolicy = builder.mReplayPolicy;
+        mCache = builder.mCache;
+        mInFlight = builder.mSingleFlight ? new HashMap<>() : null;
+        mThrottle = builder.mThrottle != null ? new Throttle<>(builder.mThrottle, new Throttle.Proceed<T>() {
+            @Override
+            public Observable<T> proceed(Object input, ExecutionHandle<T> handle) {
+                return tryProceed(input, handle);
+            }
+
+            @Override
+            public Observable<T> rejected() {
+                return disabled();
+            }
+        }) : null;
+        mTimeoutMillis = builder.mTimeoutMillis;
+        mTimeoutScheduler = builder.mTimeoutScheduler;
+        mRetryPolicy = builder.mRetryPolicy;
+        mName = builder.mName != null
+                ? builder.mName
+                : getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(this));
+        mRecorder = builder.mInstrumentation != null ? builder.mInstrumentation.recorder(mName) : null;
+        mTracer = builder.mTracer;
+        mGroup = builder.mGroup;
+        Observable<Boolean> enabledObservable = builder.mEnabled;
+
+        if (enabledObservable == null) {
+            mImmediateEnabled = mExecutionState.moreExecutionsAllowed();
+        } else {
+            ConnectableObservable<Boolean> immediateEnabled = Observable
+                    .combineLatest(enabledObservable.doOnNext(enabled -> mEnabledValue = enabled),
+                            mExecutionState.moreExecutionsAllowed(), (enabled, allowed) -> enabled && allowed)
+                    .distinctUntilChanged()
+                    .replay(1);
+            // since `mImmediateEnabled` is not export, we must trigger this stream manually
+            immediateEnabled.connect();
+            mImmediateEnabled = immediateEnabled;
+        }
+
+        if (mGroup != null) {
+            if (mQueue != null) {
+                mGroup.addWaiter(this::takeGroupSlot);
+            }
+            mGroup.moreExecutionsAllowed().subscribe(allowed -> {
+                mExecutionState.setGroupAllowed(allowed);
+                if (allowed) {
+                    drainQueue();
+                }
+            });
+        }
+    }
+
     /**
      * see {@link #allowsConcurrentExecution()}
      *
      * @param allows whether allows concurrent execution
      */
     public final void setAllowsConcurrentExecution(boolean allows) {
-        mAllowsConcurrentExecution = allows;
-        mAllowsConcurrentExecutionSubject.onNext(allows);
+        setMaxConcurrency(allows ? Integer.MAX_VALUE : 1);
+    }
+
+    /**
+     * see {@link #maxConcurrency()}
+     *
+     * @param maxConcurrency the maximum number of executions running at the same time, at least 1
+     */
+    public final void setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency > 0 required but it was " + maxConcurrency);
+        }
+        mExecutionState.setMaxConcurrency(maxConcurrency);
+        drainQueue();
+    }
+
+    /**
+     * see {@link #replayPolicy()}
+     *
+     * @param policy how the observables returned by {@link #execute(Object)} replay their values
+     */
+    public final void setReplayPolicy(@NonNull ReplayPolicy policy) {
+        if (policy == null) {
+            throw new NullPointerException("policy is null");
+        }
+        mReplayPolicy = policy;
+    }
+
+    /**
+     * How the observables returned by {@link #execute(Object)}, and sent on
+     * {@link #executionObservables()}, replay values to observers subscribing after they
+     * were sent. Only affects executions started afterwards.
+     * <p>
+     * The default value for this property is {@link ReplayPolicy#DEFAULT}, which keeps the
+     * last {@link ReplayPolicy#DEFAULT_SIZE} values.
+     */
+    public ReplayPolicy replayPolicy() {
+        return mReplayPolicy;
+    }
+
+    /**
+     * The cache serving the results of previous executions, keyed by input, see
+     * {@link Builder#cache(ResultCache)}.
+     * <p>
+     * The default value for this property is null, every call runs `func`.
+     */
+    @Nullable
+    public ResultCache<T> cache() {
+        return mCache;
+    }
+
+    /**
+     * Whether a call with the same input as a running execution joins it instead of starting
+     * another one, see {@link Builder#singleFlight(boolean)}.
+     * <p>
+     * The default value for this property is false.
+     */
+    public boolean singleFlight() {
+        return mInFlight != null;
+    }
+
+    /**
+     * The name of this command, see {@link Builder#name(String)}. Defaults to the class name
+     * followed by the identity hash code of the command.
+     */
+    public String name() {
+        return mName;
+    }
+
+    /**
+     * The group this command counts its executions with, see {@link Builder#group(CommandGroup)}.
+     * <p>
+     * The default value for this property is null.
+     */
+    @Nullable
+    public CommandGroup group() {
+        return mGroup;
+    }
+
+    /**
+     * How failed executions are retried, see {@link Builder#retry(RetryPolicy)}.
+     * <p>
+     * The default value for this property is null, executions are not retried.
+     */
+    @Nullable
+    public RetryPolicy retryPolicy() {
+        return mRetryPolicy;
+    }
+
+    /**
+     * The number of attempts made by the executions of this command so far, every execution
+     * counting once, plus once more for each time it was retried.
+     */
+    public final long attemptCount() {
+        return mAttempts.get();
     }
 
     /**
@@ -184,10 +437,23 @@ public class RxCommand<T> {
      * {@link Observable#materialize()}
      * <p>
      * Only executions that begin _after_ subscription will be sent upon this
-     * observable. All inner observables will arrive upon the main thread.
+     * observable. All inner observables will arrive upon the delivery scheduler, the main
+     * thread by default.
      */
     public Observable<Observable<T>> executionObservables() {
-        return mExecutionObservables;
+        Observable<Observable<T>> executionObservables = mExecutionObservables;
+        if (executionObservables == null) {
+            synchronized (this) {
+                executionObservables = mExecutionObservables;
+                if (executionObservables == null) {
+                    executionObservables = mAddedExecutionObservableSubject
+                            .map(observable -> observable.onErrorResumeNext(Observable.<T>empty()))
+                            .observeOn(mDeliveryScheduler);
+                    mExecutionObservables = executionObservables;
+                }
+            }
+        }
+        return executionObservables;
     }
 
     /**
@@ -198,10 +464,26 @@ public class RxCommand<T> {
      * send false.
      * <p>
      * This observable will send its current value upon subscription, and then all
-     * future values on the main thread.
+     * future values on the delivery scheduler, the main thread by default.
      */
     public Observable<Boolean> executing() {
-        return mExecuting;
+        Observable<Boolean> executing = mExecuting;
+        if (executing == null) {
+            synchronized (this) {
+                executing = mExecuting;
+                if (executing == null) {
+                    executing = mExecutionState.executing()
+                            .compose(mStateDelivery)
+                            // This is useful before the first value arrives on the delivery scheduler.
+                            .startWith(false)
+                            .distinctUntilChanged()
+                            .replay(1)
+                            .autoConnect();
+                    mExecuting = executing;
+                }
+            }
+        }
+        return executing;
     }
 
     /**
@@ -215,10 +497,25 @@ public class RxCommand<T> {
      * Once the above conditions are no longer met, the observable will send true.
      * <p>
      * This observable will send its current value upon subscription, and then all
-     * future values on the main thread.
+     * future values on the delivery scheduler, the main thread by default.
      */
     public Observable<Boolean> enabled() {
-        return mEnabled;
+        Observable<Boolean> enabled = mEnabled;
+        if (enabled == null) {
+            synchronized (this) {
+                enabled = mEnabled;
+                if (enabled == null) {
+                    enabled = Observable
+                            .concat(mImmediateEnabled.take(1),
+                                    mImmediateEnabled.skip(1).compose(mStateDelivery))
+                            .distinctUntilChanged()
+                            .replay(1)
+                            .autoConnect();
+                    mEnabled = enabled;
+                }
+            }
+        }
+        return enabled;
     }
 
     /**
@@ -228,20 +525,48 @@ public class RxCommand<T> {
      * send the associated {@link Throwable} value as a `next` event (since an `error` event
      * would terminate the stream).
      * <p>
-     * After subscription, this observable will send all future errors on the main
-     * thread.
+     * After subscription, this observable will send all future errors on the delivery
+     * scheduler, the main thread by default.
      */
     public Observable<Throwable> errors() {
-        return mErrors;
+        Observable<Throwable> errors = mErrors;
+        if (errors == null) {
+            synchronized (this) {
+                errors = mErrors;
+                if (errors == null) {
+                    errors = mErrorsSubject
+                            .observeOn(mDeliveryScheduler)
+                            // if someone subscribes to `errors` _after_ an execution
+                            // has started, it should still receive any error from that execution.
+                            .publish()
+                            .autoConnect();
+                    mErrors = errors;
+                }
+            }
+        }
+        return errors;
     }
 
     /**
-     * Whether the command allows multiple executions to proceed concurrently.
+     * Whether the command allows multiple executions to proceed concurrently, that is whether
+     * {@link #maxConcurrency()} is greater than 1.
      * <p>
      * The default value for this property is false.
      */
     public boolean allowsConcurrentExecution() {
-        return mAllowsConcurrentExecution;
+        return mExecutionState.maxConcurrency() > 1;
+    }
+
+    /**
+     * The maximum number of executions that may run at the same time. Once reached, further
+     * calls to {@link #execute(Object)} wait in the queue if the command has one, or are
+     * rejected like calls to a disabled command.
+     * <p>
+     * The default value for this property is 1, {@link #setAllowsConcurrentExecution(boolean)}
+     * sets it to 1 or {@link Integer#MAX_VALUE}.
+     */
+    public int maxConcurrency() {
+        return mExecutionState.maxConcurrency();
     }
 
     /**
@@ -250,16 +575,45 @@ public class RxCommand<T> {
      * @return the latest observable
      */
     public Observable<T> switchToLatest() {
-        return mLatestObservable;
+        Observable<T> latest = mLatestObservable;
+        if (latest == null) {
+            synchronized (this) {
+                latest = mLatestObservable;
+                if (latest == null) {
+                    latest = Observable
+                            .switchOnNext(executionObservables())
+                            .publish()
+                            .autoConnect();
+                    mLatestObservable = latest;
+                }
+            }
+        }
+        return latest;
     }
 
     /**
      * If the receiver is enabled, this method will:
      * <p>
      * 1. Invoke the `func` given at the time of creation.
-     * 2. Multicast the returned observable.
+     * 2. Multicast the returned observable according to {@link #replayPolicy()}.
      * 3. Send the multicasted observable on {@link #executionObservables()}.
-     * 4. Subscribe (connect) to the original observable on the main thread.
+     * 4. Subscribe (connect) to the original observable on the work scheduler, the main
+     * thread by default.
+     *
+     * If {@link #maxConcurrency()} executions are already running and the command has a queue,
+     * see {@link Builder#queue(int, QueueOverflow)}, the call waits in the queue instead, and the
+     * steps above happen once it leaves the queue. This method never blocks.
+     *
+     * If the command is throttled, see {@link Builder#throttle(ThrottlePolicy)}, the call may be
+     * dropped or delayed first, without calling `func`.
+     *
+     * If the command has a cache holding the result of `input`, see {@link #cache()}, `func` is
+     * not called: the cached values are sent by an execution that completes immediately, and
+     * which does not change {@link #executing()}.
+     *
+     * If the command is single-flight, see {@link #singleFlight()}, and an execution with an
+     * equal input is running, `func` is not called either: the returned observable replays that
+     * execution, which is not sent again on {@link #executionObservables()}.
      *
      * @param input The input value to pass to the receiver's `func`. This may be null.
      * @return the multicasted observable, after subscription. If the receiver is not
@@ -267,29 +621,1033 @@ public class RxCommand<T> {
      */
     @MainThread
     public final Observable<T> execute(@Nullable Object input) {
-        boolean enabled = mImmediateEnabled.blockingFirst();
-        if (!enabled) {
-            return Observable.error(new IllegalStateException("The command is disabled and cannot be executed"));
+        return execute(input, null);
+    }
+
+    /**
+     * Like {@link #execute(Object)}, but returns a handle that can cancel this call.
+     *
+     * @param input The input value to pass to the receiver's `func`. This may be null.
+     * @return the handle of the call, holding the observable {@link #execute(Object)} would
+     * have returned
+     */
+    @MainThread
+    public final ExecutionHandle<T> submit(@Nullable Object input) {
+        ExecutionHandle<T> handle = new ExecutionHandle<>();
+        handle.setObservable(execute(input, handle));
+        return handle;
+    }
+
+    /**
+     * Calls {@link #executeAll(Iterable, int, boolean)}, sending the values of the inputs in
+     * the order they arrive.
+     */
+    @MainThread
+    public final Observable<T> executeAll(@NonNull Iterable<?> inputs, int parallelism) {
+        return executeAll(inputs, parallelism, false);
+    }
+
+    /**
+     * Runs `func` for every input of `inputs` as a single execution, with at most `parallelism`
+     * inputs running at the same time. `func` is called for an input once it may run.
+     * <p>
+     * The execution takes one slot of the command, and so {@link #executing()} sends true once
+     * for all the inputs. A failing input does not stop the others: the execution fails after
+     * all of them terminated, with the error of the failing input, or a
+     * {@link io.reactivex.exceptions.CompositeException} of all the errors if several failed,
+     * which is sent once on {@link #errors()}. Timeouts and retries apply to every input on its
+     * own.
+     * <p>
+     * Unlike {@link #execute(Object)}, the call is neither throttled nor queued, and the cache
+     * and single-flight are not used.
+     *
+     * @param inputs      the inputs to pass to `func`, iterated on the work scheduler, may
+     *                    contain null like the input of {@link #execute(Object)}
+     * @param parallelism the maximum number of inputs running at the same time, must be positive
+     * @param ordered     whether the values are sent grouped by input, in the order of `inputs`,
+     *                    instead of in the order they arrive
+     * @return the multicasted observable of the values of all the inputs, after subscription. If
+     * the receiver is not enabled, returns a observable that will send an error.
+     */
+    @MainThread
+    public final Observable<T> executeAll(@NonNull Iterable<?> inputs, int parallelism, boolean ordered) {
+        if (inputs == null) {
+            throw new NullPointerException("inputs is null");
         }
-        try {
-            Observable<T> observable = mFunc.apply(input);
-            if (observable == null) {
-                throw new RuntimeException(String.format("null Observable returned from observable func for value %s", input));
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism > 0 required but it was " + parallelism);
+        }
+        if (!isImmediatelyEnabled() || !tryStart()) {
+            return disabled();
+        }
+        return start(inputs, false, section -> {
+            // deferred, so that `func` is only called once the input may run, and an input
+            // whose `func` throws fails on its own
+            Function<Object, Observable<T>> attempt = input -> Observable.defer(() -> attempt(input == NULL_INPUT ? null : input, section));
+            Observable<Object> all = Observable.fromIterable(new NullSafeInputs(inputs));
+            return ordered
+                    ? all.concatMapEagerDelayError(attempt, parallelism, Observable.bufferSize(), true)
+                    : all.flatMap(attempt, true, parallelism);
+        }, null);
+    }
+
+    /**
+     * Cancels the latest execution that is still running, if any, see {@link ExecutionHandle}.
+     */
+    public final void cancel() {
+        Execution latest;
+        synchronized (mRunningLock) {
+            latest = mLastRunning;
+        }
+        if (latest != null) {
+            latest.cancel();
+        }
+    }
+
+    /**
+     * Cancels every running execution, and drops the calls waiting in the queue or delayed by a
+     * throttle, see {@link ExecutionHandle}. Afterwards {@link #executing()} sends false.
+     */
+    public final void cancelAll() {
+        // waiting calls first, so that they do not take the slots released below
+        if (mQueue != null) {
+            ArrayList<PendingExecution> waiting;
+            synchronized (mQueue) {
+                waiting = new ArrayList<>(mQueue);
+                mQueue.clear();
+                updateQueueAccepting();
+            }
+            for (PendingExecution pending : waiting) {
+                pending.mResult.onComplete();
             }
+        }
+        if (mThrottle != null) {
+            mThrottle.cancel();
+        }
+        for (; ; ) {
+            Execution first;
+            synchronized (mRunningLock) {
+                first = mFirstRunning;
+            }
+            if (first == null) {
+                break;
+            }
+            first.cancel();
+        }
+    }
+
+    private Observable<T> execute(@Nullable Object input, @Nullable ExecutionHandle<T> handle) {
+        if (!isImmediatelyEnabled()) {
+            return disabled();
+        }
+        if (mThrottle != null) {
+            return mThrottle.submit(input, handle);
+        }
+        return proceed(input, handle);
+    }
+
+    private Observable<T> proceed(@Nullable Object input, @Nullable ExecutionHandle<T> handle) {
+        Observable<T> execution = tryProceed(input, handle);
+        return execution != null ? execution : disabled();
+    }
+
+    /**
+     * Executes a call that made it through {@link #mThrottle}, if any. Delayed calls are checked
+     * against {@link #enabled()} again when they run.
+     *
+     * @return the result of the call, or null if the command is disabled
+     */
+    @Nullable
+    private Observable<T> tryProceed(@Nullable Object input, @Nullable ExecutionHandle<T> handle) {
+        // before the cache and single-flight, which would otherwise serve a busy command
+        if (!isImmediatelyEnabled()) {
+            return null;
+        }
+        if (mCache != null) {
+            List<T> cached = mCache.get(input);
+            if (cached != null) {
+                Observable<T> execution = Observable.fromIterable(cached);
+                mAddedExecutionObservableSubject.onNext(execution);
+                return execution;
+            }
+        }
+        if (mInFlight != null) {
+            Execution running;
+            synchronized (mInFlight) {
+                running = mInFlight.get(input);
+                if (running != null) {
+                    running.mCallers.incrementAndGet();
+                }
+            }
+            if (running != null) {
+                if (handle != null) {
+                    handle.setCanceller(Disposables.fromRunnable(running::release));
+                }
+                return running.mConnection.hide();
+            }
+        }
+        if (tryStart()) {
+            return start(input, handle);
+        }
+        if (mQueue != null) {
+            return enqueue(input, handle);
+        }
+        return null;
+    }
+
+    /**
+     * Whether the command is enabled right now, as {@link #enabled()} would say once delivered:
+     * the `enabledObservable` allows it, and so does the execution state.
+     */
+    private boolean isImmediatelyEnabled() {
+        return mEnabledValue && mExecutionState.allowsMoreExecutions();
+    }
+
+    private Observable<T> disabled() {
+        if (mRecorder != null) {
+            mRecorder.rejected();
+        }
+        return Observable.error(new IllegalStateException("The command is disabled and cannot be executed"));
+    }
+
+    /**
+     * Runs an execution whose slot has been taken by {@link #tryStart()}.
+     */
+    private Observable<T> start(@Nullable Object input, @Nullable ExecutionHandle<T> handle) {
+        if (mCache != null) {
+            mCache.missed();
+        }
+        return start(input, true, section -> attempt(input, section), handle);
+    }
+
+    /**
+     * @param input  the input of the execution, or the inputs of {@link #executeAll(Iterable, int, boolean)}
+     * @param single whether the execution runs `func` once, and may be cached and joined
+     * @param source creates the observable of the execution, given the name of its trace section
+     */
+    private Observable<T> start(@Nullable Object input, boolean single, Func<String, Observable<T>> source,
+                                @Nullable ExecutionHandle<T> handle) {
+        long startNanos = 0;
+        if (mRecorder != null) {
+            startNanos = System.nanoTime();
+            mRecorder.started(mExecutionState.running());
+        }
+        int id = 0;
+        String section = null;
+        if (mTracer != null) {
+            id = mExecutionIds.incrementAndGet();
+            section = mName + "#" + id;
+            mTracer.beginAsyncSection(section, id);
+        }
+        try {
+            Observable<T> observable = source.apply(section);
 
             // This means that `executing` and `enabled` will send updated values before
             // the observable actually starts performing work.
-            final ConnectableObservable<T> connection = observable
-                    .subscribeOn(AndroidSchedulers.mainThread())
-                    .replay();
+            Execution execution = new Execution(input, single, startNanos, section, id);
+            // lifted after subscribeOn, so that the execution is subscribed while connecting
+            // and a cancellation can complete the multicast before the work has started
+            final ConnectableObservable<T> connection = mReplayPolicy.apply(observable
+                    .subscribeOn(mWorkScheduler)
+                    .lift(execution));
 
+            if (single && mInFlight != null) {
+                execution.mConnection = connection;
+                synchronized (mInFlight) {
+                    mInFlight.put(input, execution);
+                }
+            }
+            synchronized (mRunningLock) {
+                execution.mPrevious = mLastRunning;
+                if (mLastRunning != null) {
+                    mLastRunning.mNext = execution;
+                } else {
+                    mFirstRunning = execution;
+                }
+                mLastRunning = execution;
+            }
             mAddedExecutionObservableSubject.onNext(connection);
             connection.connect();
+            execution.mConnected = true;
+            if (execution.mCancelled) {
+                // cancelled from another thread while connecting
+                execution.disconnect();
+            }
+            if (handle != null) {
+                handle.setCanceller(Disposables.fromRunnable(execution::release));
+            }
             return connection;
         } catch (Exception e) {
             e.printStackTrace();
+            if (mRecorder != null) {
+                mRecorder.failed(e, System.nanoTime() - startNanos);
+            }
+            if (mTracer != null) {
+                mTracer.endAsyncSection(section, id);
+            }
+            executionTerminated();
             return Observable.error(e);
         }
     }
-}
 
+    /**
+     * Calls `func` with `input`, and wraps the returned observable for one execution.
+     *
+     * @param section the name of the trace section of the execution, null unless traced
+     */
+    private Observable<T> attempt(@Nullable Object input, @Nullable String section) throws Exception {
+        Observable<T> observable;
+        if (mTracer != null) {
+            mTracer.beginSection(section + " func");
+            try {
+                observable = mFunc.apply(input);
+            } finally {
+                mTracer.endSection();
+            }
+        } else {
+            observable = mFunc.apply(input);
+        }
+        if (observable == null) {
+            throw new RuntimeException(String.format("null Observable returned from observable func for value %s", input));
+        }
+        if (mTracer != null) {
+            observable = new TracedSubscription<>(observable, mTracer, section + " subscribe");
+        }
+
+        // Timeout and retry wrap each attempt, so that only the last failure reaches
+        // the execution and `errors`, and retries do not call `func` again.
+        if (mTimeoutMillis > 0) {
+            observable = observable.timeout(mTimeoutMillis, TimeUnit.MILLISECONDS, mTimeoutScheduler);
+        }
+        if (mRetryPolicy != null) {
+            observable = mRetryPolicy.apply(observable, mAttempts, mWorkScheduler);
+        }
+        mAttempts.incrementAndGet();
+        return observable;
+    }
+
+    private Observable<T> enqueue(@Nullable Object input, @Nullable ExecutionHandle<T> handle) {
+        PendingExecution pending = new PendingExecution(input, handle);
+        PendingExecution dropped = null;
+        synchronized (mQueue) {
+            if (mQueue.size() >= mQueueCapacity) {
+                switch (mQueueOverflow) {
+                    case DROP_OLDEST:
+                        dropped = mQueue.poll();
+                        break;
+                    case DROP_NEWEST:
+                        return Observable.empty();
+                    default:
+                        return Observable.error(new IllegalStateException("The command's execution queue is full"));
+                }
+            }
+            mQueue.offer(pending);
+            updateQueueAccepting();
+        }
+        if (dropped != null) {
+            dropped.mResult.onComplete();
+        }
+        if (handle != null) {
+            handle.setCanceller(Disposables.fromRunnable(() -> cancelWaiting(pending)));
+        }
+        // an execution may have terminated since the slot was refused
+        drainQueue();
+        return pending.mResult.flatMap(connection -> connection);
+    }
+
+    private void cancelWaiting(PendingExecution pending) {
+        boolean removed;
+        synchronized (mQueue) {
+            removed = mQueue.remove(pending);
+            if (removed) {
+                updateQueueAccepting();
+            }
+        }
+        if (removed) {
+            pending.mResult.onComplete();
+        }
+    }
+
+    /**
+     * Must be called while holding the lock of {@link #mQueue}.
+     */
+    private void updateQueueAccepting() {
+        mExecutionState.setQueueAccepting(mQueueOverflow != QueueOverflow.REJECT || mQueue.size() < mQueueCapacity);
+    }
+
+    /**
+     * Starts the executions handed a slot by {@link #executionTerminated()}, then the waiting
+     * executions for which there are free slots.
+     */
+    private void drainQueue() {
+        if (mQueue == null || mQueueWip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        for (; ; ) {
+            PendingExecution pending;
+            while ((pending = mHandedOff.poll()) != null) {
+                pending.start();
+            }
+            for (; ; ) {
+                synchronized (mQueue) {
+                    if (mQueue.isEmpty() || !tryStart()) {
+                        break;
+                    }
+                    pending = mQueue.poll();
+                    updateQueueAccepting();
+                }
+                pending.start();
+            }
+            missed = mQueueWip.addAndGet(-missed);
+            if (missed == 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Releases the slot of a terminated execution, or hands it over to the oldest waiting call
+     * so that {@link #executing()} and {@link #enabled()} do not flicker in between.
+     */
+    private void executionTerminated() {
+        if (mQueue != null) {
+            PendingExecution next;
+            synchronized (mQueue) {
+                next = mQueue.poll();
+                if (next != null) {
+                    updateQueueAccepting();
+                }
+            }
+            if (next != null) {
+                mHandedOff.offer(next);
+                drainQueue();
+                return;
+            }
+        }
+        mExecutionState.terminated();
+        if (mGroup != null) {
+            mGroup.terminated();
+        }
+        drainQueue();
+    }
+
+    /**
+     * Starts the oldest waiting call with the slot of the group released by another member.
+     *
+     * @return whether a waiting call took the slot
+     */
+    private boolean takeGroupSlot() {
+        PendingExecution next;
+        synchronized (mQueue) {
+            if (mQueue.isEmpty() || !mExecutionState.tryStart()) {
+                return false;
+            }
+            next = mQueue.poll();
+            updateQueueAccepting();
+        }
+        mHandedOff.offer(next);
+        drainQueue();
+        return true;
+    }
+
+    /**
+     * Takes a slot of the command, and of its group if any.
+     */
+    private boolean tryStart() {
+        if (mGroup == null) {
+            return mExecutionState.tryStart();
+        }
+        // a full command does not take, then give back, a slot of the group
+        if (mExecutionState.running() >= mExecutionState.maxConcurrency() || !mGroup.tryStart()) {
+            return false;
+        }
+        if (mExecutionState.tryStart()) {
+            return true;
+        }
+        mGroup.terminated();
+        return false;
+    }
+
+    /**
+     * Collects the options of a command, see {@link #builder(Func)}.
+     */
+    public static final class Builder<T> {
+
+        private final Func<Object, Observable<T>> mFunc;
+
+        private Observable<Boolean> mEnabled;
+
+        private Scheduler mWorkScheduler;
+
+        private Scheduler mDeliveryScheduler;
+
+        private CoalescingDispatcher mStateDispatcher;
+
+        private int mMaxConcurrency = 1;
+
+        private int mQueueCapacity;
+
+        private QueueOverflow mQueueOverflow;
+
+        private ReplayPolicy mReplayPolicy = ReplayPolicy.DEFAULT;
+
+        private ResultCache<T> mCache;
+
+        private boolean mSingleFlight;
+
+        private ThrottlePolicy mThrottle;
+
+        private String mName;
+
+        private CommandInstrumentation mInstrumentation;
+
+        private CommandTracer mTracer;
+
+        private CommandGroup mGroup;
+
+        private long mTimeoutMillis;
+
+        private Scheduler mTimeoutScheduler;
+
+        private RetryPolicy mRetryPolicy;
+
+        Builder(@NonNull Func<Object, Observable<T>> func) {
+            if (func == null) {
+                throw new NullPointerException("func is null");
+            }
+            mFunc = func;
+        }
+
+        /**
+         * see `enabledObservable` of {@link #RxCommand(Observable, Func)}
+         */
+        public Builder<T> enabled(@Nullable Observable<Boolean> enabled) {
+            mEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * The scheduler the observables returned by `func` are subscribed on. Use
+         * {@link io.reactivex.schedulers.Schedulers#computation()} or
+         * {@link io.reactivex.schedulers.Schedulers#io()} for work that should stay off the
+         * main thread. Defaults to the main thread.
+         */
+        public Builder<T> workScheduler(@NonNull Scheduler scheduler) {
+            if (scheduler == null) {
+                throw new NullPointerException("scheduler is null");
+            }
+            mWorkScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * The scheduler {@link #executionObservables()}, {@link #errors()},
+         * {@link #executing()} and {@link #enabled()} send their values on. Defaults to the
+         * main thread.
+         */
+        public Builder<T> deliveryScheduler(@NonNull Scheduler scheduler) {
+            if (scheduler == null) {
+                throw new NullPointerException("scheduler is null");
+            }
+            mDeliveryScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Deliver {@link #executing()} and {@link #enabled()} through `dispatcher` instead of the
+         * delivery scheduler. Only the latest state is delivered, and the states of all the
+         * commands sharing `dispatcher` are delivered by one dispatch.
+         */
+        public Builder<T> stateDispatcher(@NonNull CoalescingDispatcher dispatcher) {
+            if (dispatcher == null) {
+                throw new NullPointerException("dispatcher is null");
+            }
+            mStateDispatcher = dispatcher;
+            return this;
+        }
+
+        /**
+         * see {@link #allowsConcurrentExecution()}
+         */
+        public Builder<T> allowsConcurrentExecution(boolean allows) {
+            mMaxConcurrency = allows ? Integer.MAX_VALUE : 1;
+            return this;
+        }
+
+        /**
+         * see {@link #maxConcurrency()}
+         */
+        public Builder<T> maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency <= 0) {
+                throw new IllegalArgumentException("maxConcurrency > 0 required but it was " + maxConcurrency);
+            }
+            mMaxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Queue the calls to {@link #execute(Object)} made while {@link #maxConcurrency()}
+         * executions are running, and start them in order as running executions terminate.
+         * While the queue accepts calls, {@link #enabled()} does not turn false because of
+         * running executions. Calls still waiting when the `enabledObservable` turns false are
+         * rejected as they leave the queue, like calls made while disabled.
+         *
+         * @param capacity the maximum number of waiting calls, must be positive
+         * @param overflow what happens to a call made while the queue is full
+         */
+        public Builder<T> queue(int capacity, @NonNull QueueOverflow overflow) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("capacity > 0 required but it was " + capacity);
+            }
+            if (overflow == null) {
+                throw new NullPointerException("overflow is null");
+            }
+            mQueueCapacity = capacity;
+            mQueueOverflow = overflow;
+            return this;
+        }
+
+        /**
+         * see {@link #replayPolicy()}
+         */
+        public Builder<T> replayPolicy(@NonNull ReplayPolicy policy) {
+            if (policy == null) {
+                throw new NullPointerException("policy is null");
+            }
+            mReplayPolicy = policy;
+            return this;
+        }
+
+        /**
+         * see {@link #cache()}
+         */
+        public Builder<T> cache(@Nullable ResultCache<T> cache) {
+            mCache = cache;
+            return this;
+        }
+
+        /**
+         * Let a call whose input equals, by {@link Object#equals(Object)}, the input of a
+         * running execution join that execution instead of calling `func` again. Useful with
+         * {@link #allowsConcurrentExecution(boolean)}, since otherwise the command is disabled
+         * while an execution is running. A shared execution is cancelled by its handles once all
+         * of them are disposed, see {@link ExecutionHandle}.
+         */
+        public Builder<T> singleFlight(boolean singleFlight) {
+            mSingleFlight = singleFlight;
+            return this;
+        }
+
+        /**
+         * Limit the rate of calls to {@link #execute(Object)}, before `func` is called. Useful
+         * against double taps, together with {@link #allowsConcurrentExecution(boolean)}.
+         */
+        public Builder<T> throttle(@Nullable ThrottlePolicy policy) {
+            mThrottle = policy;
+            return this;
+        }
+
+        /**
+         * Fail an attempt of an execution with a {@link java.util.concurrent.TimeoutException}
+         * if the observable returned by `func` sends no event for `timeout`, measured by the
+         * computation scheduler. With {@link #retry(RetryPolicy)}, the timeout applies to every
+         * attempt, and a timed out attempt is retried like any other failure.
+         */
+        public Builder<T> timeout(long timeout, @NonNull TimeUnit unit) {
+            return timeout(timeout, unit, Schedulers.computation());
+        }
+
+        /**
+         * Like {@link #timeout(long, TimeUnit)}, measured by `scheduler`.
+         */
+        public Builder<T> timeout(long timeout, @NonNull TimeUnit unit, @NonNull Scheduler scheduler) {
+            if (unit == null) {
+                throw new NullPointerException("unit is null");
+            }
+            if (scheduler == null) {
+                throw new NullPointerException("scheduler is null");
+            }
+            if (timeout <= 0) {
+                throw new IllegalArgumentException("timeout > 0 required but it was " + timeout);
+            }
+            mTimeoutMillis = unit.toMillis(timeout);
+            mTimeoutScheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * see {@link #retryPolicy()}
+         */
+        public Builder<T> retry(@Nullable RetryPolicy policy) {
+            mRetryPolicy = policy;
+            return this;
+        }
+
+        /**
+         * see {@link #name()}
+         */
+        public Builder<T> name(@NonNull String name) {
+            if (name == null) {
+                throw new NullPointerException("name is null");
+            }
+            mName = name;
+            return this;
+        }
+
+        /**
+         * Report the executions of the command to `instrumentation`, under its {@link #name()}.
+         * Defaults to null, nothing is reported.
+         */
+        public Builder<T> instrumentation(@Nullable CommandInstrumentation instrumentation) {
+            mInstrumentation = instrumentation;
+            return this;
+        }
+
+        /**
+         * Trace every execution of the command with `tracer`, under its {@link #name()}. Use
+         * {@link AndroidTracer} to see executions in systrace. Defaults to null, nothing is
+         * traced.
+         */
+        public Builder<T> tracer(@Nullable CommandTracer tracer) {
+            mTracer = tracer;
+            return this;
+        }
+
+        /**
+         * Count the executions of the command in `group`, see {@link CommandGroup}. While the
+         * group is full, the command is disabled, unless it has a queue.
+         */
+        public Builder<T> group(@Nullable CommandGroup group) {
+            mGroup = group;
+            return this;
+        }
+
+        public RxCommand<T> build() {
+            return new RxCommand<>(this);
+        }
+    }
+
+    /**
+     * Sits between the observable returned by `func` and its multicast, and classifies the
+     * events of one execution in a single pass: errors are forwarded to {@link #errors()},
+     * and the first terminal event (or disposal) ends the execution. The values of an execution
+     * that completes are put in the cache, if any.
+     */
+    private final class Execution extends AtomicBoolean implements ObservableOperator<T, T>, Observer<T>, Disposable {
+
+        private static final long serialVersionUID = -4851203457092347516L;
+
+        private Observer<? super T> mDownstream;
+
+        private volatile Disposable mUpstream;
+
+        /**
+         * Serializes the completion sent by {@link #disconnect()} with the events of the
+         * upstream, which are dropped afterwards.
+         */
+        private final AtomicInteger mWip = new AtomicInteger();
+
+        private final Object mInput;
+
+        private final List<T> mValues;
+
+        /**
+         * When the execution started, read only if {@link #mRecorder} is set.
+         */
+        private final long mStartNanos;
+
+        private boolean mSentValue;
+
+        /**
+         * The name and cookie of the async section of this execution, null unless traced.
+         */
+        private final String mSection;
+
+        private final int mCookie;
+
+        /**
+         * The multicast of this execution, set when the command is single-flight.
+         */
+        ConnectableObservable<T> mConnection;
+
+        /**
+         * The number of calls sharing this execution that have not been cancelled, null unless
+         * the command is single-flight.
+         */
+        final AtomicInteger mCallers;
+
+        /**
+         * Whether the multicast has been connected, after which {@link #disconnect()} may run.
+         */
+        volatile boolean mConnected;
+
+        volatile boolean mCancelled;
+
+        /**
+         * Links in the list of running executions, guarded by {@link #mRunningLock}.
+         */
+        Execution mPrevious;
+
+        Execution mNext;
+
+        Execution(Object input, boolean cacheable, long startNanos, String section, int cookie) {
+            mInput = input;
+            mStartNanos = startNanos;
+            mSection = section;
+            mCookie = cookie;
+            mValues = cacheable && mCache != null ? new ArrayList<>() : null;
+            mCallers = cacheable && mInFlight != null ? new AtomicInteger(1) : null;
+        }
+
+        @Override
+        public Observer<? super T> apply(@NonNull Observer<? super T> observer) {
+            mDownstream = observer;
+            return this;
+        }
+
+        @Override
+        public void onSubscribe(@NonNull Disposable d) {
+            mUpstream = d;
+            mDownstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(@NonNull T t) {
+            if (mWip.get() != 0 || !mWip.compareAndSet(0, 1)) {
+                return;
+            }
+            if (mValues != null) {
+                mValues.add(t);
+            }
+            if (mRecorder != null && !mSentValue) {
+                mSentValue = true;
+                mRecorder.firstValue(System.nanoTime() - mStartNanos);
+            }
+            mDownstream.onNext(t);
+            if (mWip.decrementAndGet() != 0) {
+                // disconnected while sending, complete on its behalf
+                mDownstream.onComplete();
+            }
+        }
+
+        @Override
+        public void onError(@NonNull Throwable e) {
+            if (mWip.getAndIncrement() != 0) {
+                return;
+            }
+            try {
+                if (mSection == null) {
+                    mDownstream.onError(e);
+                    return;
+                }
+                mTracer.beginSection(mSection + " onError");
+                try {
+                    mDownstream.onError(e);
+                } finally {
+                    mTracer.endSection();
+                }
+            } finally {
+                ended(e);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (mWip.getAndIncrement() != 0) {
+                return;
+            }
+            if (mValues != null && !get()) {
+                mCache.put(mInput, mValues);
+            }
+            try {
+                if (mSection == null) {
+                    mDownstream.onComplete();
+                    return;
+                }
+                mTracer.beginSection(mSection + " onComplete");
+                try {
+                    mDownstream.onComplete();
+                } finally {
+                    mTracer.endSection();
+                }
+            } finally {
+                ended(null);
+            }
+        }
+
+        /**
+         * Ends the execution once its observers have received its terminal event, so that they
+         * see it end before {@link #executing()} changes or a queued execution starts.
+         *
+         * @param error the error of the execution, null if it completed
+         */
+        private void ended(@Nullable Throwable error) {
+            if (!terminate()) {
+                return;
+            }
+            if (error != null) {
+                if (mRecorder != null) {
+                    mRecorder.failed(error, System.nanoTime() - mStartNanos);
+                }
+                mErrorsSubject.onNext(error);
+            } else if (mRecorder != null) {
+                mRecorder.completed(System.nanoTime() - mStartNanos);
+            }
+            if (mSection != null) {
+                mTracer.endAsyncSection(mSection, mCookie);
+            }
+        }
+
+        @Override
+        public void dispose() {
+            mUpstream.dispose();
+            cancelled();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return mUpstream.isDisposed();
+        }
+
+        /**
+         * Cancels the execution on behalf of one of the calls sharing it, once all of them have
+         * been cancelled.
+         */
+        void release() {
+            if (mCallers == null || mCallers.decrementAndGet() == 0) {
+                cancel();
+            }
+        }
+
+        void cancel() {
+            mCancelled = true;
+            cancelled();
+            if (mConnected) {
+                disconnect();
+            }
+        }
+
+        /**
+         * Disposes the observable returned by `func`, and completes the multicast, so that the
+         * observers of the execution, commands composing it included, see it end.
+         */
+        void disconnect() {
+            mUpstream.dispose();
+            if (mWip.getAndIncrement() == 0) {
+                mDownstream.onComplete();
+            }
+        }
+
+        private void cancelled() {
+            if (terminate()) {
+                if (mRecorder != null) {
+                    mRecorder.cancelled(System.nanoTime() - mStartNanos);
+                }
+                if (mSection != null) {
+                    mTracer.endAsyncSection(mSection, mCookie);
+                }
+            }
+        }
+
+        private boolean terminate() {
+            if (compareAndSet(false, true)) {
+                synchronized (mRunningLock) {
+                    if (mPrevious != null) {
+                        mPrevious.mNext = mNext;
+                    } else {
+                        mFirstRunning = mNext;
+                    }
+                    if (mNext != null) {
+                        mNext.mPrevious = mPrevious;
+                    } else {
+                        mLastRunning = mPrevious;
+                    }
+                    mPrevious = null;
+                    mNext = null;
+                }
+                if (mInFlight != null) {
+                    synchronized (mInFlight) {
+                        if (mInFlight.get(mInput) == this) {
+                            mInFlight.remove(mInput);
+                        }
+                    }
+                }
+                executionTerminated();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A call to {@link #execute(Object)} waiting in the queue. Its result is sent once it
+     * leaves the queue, an error if the command has been disabled in the meantime, or the
+     * subject completes empty if it is dropped.
+     */
+    private final class PendingExecution {
+
+        private final Object mInput;
+
+        private final ExecutionHandle<T> mHandle;
+
+        private final AsyncSubject<Observable<T>> mResult = AsyncSubject.create();
+
+        PendingExecution(Object input, ExecutionHandle<T> handle) {
+            mInput = input;
+            mHandle = handle;
+        }
+
+        /**
+         * Called once a slot has been taken for this call.
+         */
+        void start() {
+            if (!mEnabledValue) {
+                mResult.onNext(disabled());
+                mResult.onComplete();
+                // passes the slot on to the next waiting call, which is rejected in turn
+                executionTerminated();
+                return;
+            }
+            mResult.onNext(RxCommand.this.start(mInput, mHandle));
+            mResult.onComplete();
+        }
+    }
+
+    /**
+     * Stands for a null input of {@link #executeAll(Iterable, int, boolean)}, since observables
+     * cannot send null.
+     */
+    private static final Object NULL_INPUT = new Object();
+
+    private static final class NullSafeInputs implements Iterable<Object> {
+
+        private final Iterable<?> mInputs;
+
+        NullSafeInputs(Iterable<?> inputs) {
+            mInputs = inputs;
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            Iterator<?> inputs = mInputs.iterator();
+            return new Iterator<Object>() {
+                @Override
+                public boolean hasNext() {
+                    return inputs.hasNext();
+                }
+
+                @Override
+                public Object next() {
+                    Object input = inputs.next();
+                    return input != null ? input : NULL_INPUT;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package com.shundaojia.rxcommand;
 
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.LifecycleOwner;
+import android.arch.lifecycle.OnLifecycleEvent;
+import android.support.annotation.MainThread;
 import android.view.View;
 
 import io.reactivex.ObservableTransformer;
+import io.reactivex.annotations.NonNull;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
 import io.reactivex.functions.Consumer;
 
 /**
@@ -29,4 +36,75 @@ public class RxCommandBinder {
                 .subscribe(view::setEnabled);
     }
 
+    /**
+     * Bind `views` to `command` until `owner` is destroyed: clicking any of them executes the
+     * command, and they are all enabled by a single subscription to {@link RxCommand#enabled()}.
+     * <p>
+     * When `owner` is destroyed the subscription is disposed, and the click listeners and the
+     * views are released, so a command kept across configuration changes, e.g. by a view model,
+     * does not hold on to the views of a destroyed activity. Bind the views of the new activity
+     * again, the command shares its streams with every binding.
+     *
+     * @return disposes the binding before `owner` is destroyed
+     */
+    @MainThread
+    public static <T> Disposable bind(@NonNull LifecycleOwner owner, @NonNull final RxCommand<T> command, @NonNull View... views) {
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            return Disposables.disposed();
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Consumer<? super Boolean>[] targets = new Consumer[views.length];
+        for (int i = 0; i < views.length; i++) {
+            View view = views[i];
+            view.setClickable(true);
+            view.setOnClickListener(v -> command.execute(null));
+            targets[i] = view::setEnabled;
+        }
+        LifecycleBinding binding = new LifecycleBinding(lifecycle, new Binding(command.enabled(), targets), views.clone());
+        lifecycle.addObserver(binding);
+        return binding;
+    }
+
+    /**
+     * Ends a binding when its lifecycle is destroyed.
+     */
+    static final class LifecycleBinding implements LifecycleObserver, Disposable {
+
+        private final Lifecycle mLifecycle;
+
+        private final Binding mBinding;
+
+        private View[] mViews;
+
+        LifecycleBinding(Lifecycle lifecycle, Binding binding, View[] views) {
+            mLifecycle = lifecycle;
+            mBinding = binding;
+            mViews = views;
+        }
+
+        @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+        void onDestroy() {
+            dispose();
+        }
+
+        @Override
+        public void dispose() {
+            if (mBinding.isDisposed()) {
+                return;
+            }
+            mBinding.dispose();
+            mLifecycle.removeObserver(this);
+            for (View view : mViews) {
+                view.setOnClickListener(null);
+            }
+            mViews = null;
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return mBinding.isDisposed();
+        }
+    }
+
 }
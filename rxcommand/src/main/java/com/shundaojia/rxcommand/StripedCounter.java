@@ -0,0 +1,52 @@
+package com.shundaojia.rxcommand;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter spread over several cells, so that threads incrementing it at the same time mostly
+ * write to different cache lines. Reading it sums the cells, so prefer it for values written
+ * often and read rarely.
+ */
+final class StripedCounter {
+
+    private static final int STRIPES = stripes();
+
+    /**
+     * The distance between two cells, in longs, so that each one sits on its own cache line.
+     */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray mCells = new AtomicLongArray(STRIPES * PADDING);
+
+    void increment() {
+        add(1);
+    }
+
+    void add(long delta) {
+        mCells.getAndAdd(index(), delta);
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += mCells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private static int index() {
+        return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+    }
+
+    /**
+     * The number of processors rounded up to a power of two, at most 64.
+     */
+    private static int stripes() {
+        int processors = Math.min(Runtime.getRuntime().availableProcessors(), 64);
+        int stripes = 1;
+        while (stripes < processors) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+}
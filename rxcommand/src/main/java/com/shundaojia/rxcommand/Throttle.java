@@ -0,0 +1,167 @@
+package com.shundaojia.rxcommand;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.annotations.Nullable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.subjects.AsyncSubject;
+
+/**
+ * The state of a {@link ThrottlePolicy} for one command, guarded by itself.
+ */
+final class Throttle<T> {
+
+    private final ThrottlePolicy mPolicy;
+
+    /**
+     * Executes a call that made it through, without throttling it again.
+     */
+    interface Proceed<T> {
+        /**
+         * @return the result of the call, or null if the command rejected it
+         */
+        @Nullable
+        Observable<T> proceed(Object input, ExecutionHandle<T> handle);
+
+        /**
+         * The result of a call the command rejected.
+         */
+        Observable<T> rejected();
+    }
+
+    private final Proceed<T> mProceed;
+
+    /**
+     * When the last call was run, or {@link Long#MIN_VALUE} before the first one. A call the
+     * command rejects gives the previous value back, so that it does not use up the window.
+     */
+    private long mLastRun = Long.MIN_VALUE;
+
+    /**
+     * The delayed call, if any.
+     */
+    private AsyncSubject<Observable<T>> mPending;
+
+    private Disposable mPendingTask;
+
+    Throttle(ThrottlePolicy policy, Proceed<T> proceed) {
+        mPolicy = policy;
+        mProceed = proceed;
+    }
+
+    /**
+     * @param handle the handle of the call, if it was submitted, see {@link ExecutionHandle}
+     */
+    Observable<T> submit(Object input, ExecutionHandle<T> handle) {
+        long now = mPolicy.mScheduler.now(TimeUnit.MILLISECONDS);
+        long previous;
+        long delay;
+        AsyncSubject<Observable<T>> replaced;
+        AsyncSubject<Observable<T>> pending;
+        synchronized (this) {
+            previous = mLastRun;
+            switch (mPolicy.mMode) {
+                case THROTTLE_FIRST:
+                    if (mLastRun != Long.MIN_VALUE && now - mLastRun < mPolicy.mWindowMillis) {
+                        return Observable.empty();
+                    }
+                    mLastRun = now;
+                    delay = 0;
+                    break;
+                case MIN_INTERVAL:
+                    delay = mLastRun == Long.MIN_VALUE ? 0 : mLastRun + mPolicy.mWindowMillis - now;
+                    if (delay <= 0 && mPending == null) {
+                        mLastRun = now;
+                    }
+                    break;
+                default:
+                    delay = mPolicy.mWindowMillis;
+                    break;
+            }
+            replaced = mPending;
+            if (replaced != null) {
+                mPendingTask.dispose();
+            }
+            if (delay <= 0 && replaced == null) {
+                mPending = null;
+                pending = null;
+            } else {
+                pending = AsyncSubject.create();
+                mPending = pending;
+                mPendingTask = mPolicy.mScheduler.scheduleDirect(() -> run(pending, input, handle), Math.max(delay, 0), TimeUnit.MILLISECONDS);
+            }
+        }
+        if (replaced != null) {
+            replaced.onComplete();
+        }
+        if (pending == null) {
+            return proceed(input, handle, now, previous);
+        }
+        if (handle != null) {
+            handle.setCanceller(Disposables.fromRunnable(() -> cancel(pending)));
+        }
+        return pending.flatMap(execution -> execution);
+    }
+
+    /**
+     * Drops the delayed call, if any.
+     */
+    void cancel() {
+        AsyncSubject<Observable<T>> pending;
+        synchronized (this) {
+            pending = mPending;
+        }
+        if (pending != null) {
+            cancel(pending);
+        }
+    }
+
+    private void cancel(AsyncSubject<Observable<T>> pending) {
+        synchronized (this) {
+            if (mPending != pending) {
+                return;
+            }
+            mPending = null;
+            mPendingTask.dispose();
+            mPendingTask = null;
+        }
+        pending.onComplete();
+    }
+
+    private void run(AsyncSubject<Observable<T>> pending, Object input, ExecutionHandle<T> handle) {
+        long now;
+        long previous;
+        synchronized (this) {
+            if (mPending != pending) {
+                return;
+            }
+            mPending = null;
+            mPendingTask = null;
+            previous = mLastRun;
+            now = mPolicy.mScheduler.now(TimeUnit.MILLISECONDS);
+            mLastRun = now;
+        }
+        pending.onNext(proceed(input, handle, now, previous));
+        pending.onComplete();
+    }
+
+    /**
+     * @param run      when the call was stamped as run
+     * @param previous the stamp it replaced
+     */
+    private Observable<T> proceed(Object input, ExecutionHandle<T> handle, long run, long previous) {
+        Observable<T> execution = mProceed.proceed(input, handle);
+        if (execution != null) {
+            return execution;
+        }
+        synchronized (this) {
+            // unless another call has run since
+            if (mLastRun == run) {
+                mLastRun = previous;
+            }
+        }
+        return mProceed.rejected();
+    }
+}
@@ -0,0 +1,97 @@
+package com.shundaojia.rxcommand;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.annotations.NonNull;
+
+/**
+ * How a command limits the rate of calls to {@link RxCommand#execute(Object)}, see
+ * {@link RxCommand.Builder#throttle(ThrottlePolicy)}. Calls are throttled before `func` is
+ * called, so repeated taps cost no work.
+ * <p>
+ * A call that is dropped returns an observable completing without values. A call that is
+ * delayed returns an observable that sends the values of its execution once it starts. A call
+ * the command rejects, because it is disabled when the call runs, does not count as run, so the
+ * next call is throttled against the previous one that did.
+ * Time is read from, and delayed calls are run on, the policy's scheduler, the main thread
+ * by default. Pass a {@link io.reactivex.schedulers.TestScheduler} to test them.
+ */
+public final class ThrottlePolicy {
+
+    enum Mode {
+        THROTTLE_FIRST,
+        DEBOUNCE,
+        MIN_INTERVAL
+    }
+
+    /**
+     * Runs the first call, then drops the calls made during the following `window`.
+     */
+    public static ThrottlePolicy throttleFirst(long window, @NonNull TimeUnit unit) {
+        return throttleFirst(window, unit, AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * Runs the first call, then drops the calls made during the following `window`, measured by
+     * `scheduler`.
+     */
+    public static ThrottlePolicy throttleFirst(long window, @NonNull TimeUnit unit, @NonNull Scheduler scheduler) {
+        return new ThrottlePolicy(Mode.THROTTLE_FIRST, window, unit, scheduler);
+    }
+
+    /**
+     * Delays every call by `window`, and only runs it if no other call is made in between. The
+     * calls it replaces complete without values.
+     */
+    public static ThrottlePolicy debounce(long window, @NonNull TimeUnit unit) {
+        return debounce(window, unit, AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * Delays every call by `window` on `scheduler`, and only runs it if no other call is made in
+     * between. The calls it replaces complete without values.
+     */
+    public static ThrottlePolicy debounce(long window, @NonNull TimeUnit unit, @NonNull Scheduler scheduler) {
+        return new ThrottlePolicy(Mode.DEBOUNCE, window, unit, scheduler);
+    }
+
+    /**
+     * Runs calls at least `interval` apart: a call made too soon after the previous execution
+     * started is delayed until the interval has elapsed. Only the latest delayed call is kept,
+     * the one it replaces completes without values.
+     */
+    public static ThrottlePolicy minInterval(long interval, @NonNull TimeUnit unit) {
+        return minInterval(interval, unit, AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * Runs calls at least `interval` apart, measured by `scheduler`, and delays the calls made too
+     * soon on it, see {@link #minInterval(long, TimeUnit)}.
+     */
+    public static ThrottlePolicy minInterval(long interval, @NonNull TimeUnit unit, @NonNull Scheduler scheduler) {
+        return new ThrottlePolicy(Mode.MIN_INTERVAL, interval, unit, scheduler);
+    }
+
+    final Mode mMode;
+
+    final long mWindowMillis;
+
+    final Scheduler mScheduler;
+
+    private ThrottlePolicy(Mode mode, long window, TimeUnit unit, Scheduler scheduler) {
+        if (unit == null) {
+            throw new NullPointerException("unit is null");
+        }
+        if (scheduler == null) {
+            throw new NullPointerException("scheduler is null");
+        }
+        if (window <= 0) {
+            throw new IllegalArgumentException("window > 0 required but it was " + window);
+        }
+        mMode = mode;
+        mWindowMillis = unit.toMillis(window);
+        mScheduler = scheduler;
+    }
+}
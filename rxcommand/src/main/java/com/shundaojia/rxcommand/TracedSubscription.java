@@ -0,0 +1,34 @@
+package com.shundaojia.rxcommand;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.Observer;
+
+/**
+ * Traces the subscription to `source` as a section of the subscribing thread. Every
+ * subscription is traced, so the attempts of a retried execution each get their own section.
+ */
+final class TracedSubscription<T> extends Observable<T> {
+
+    private final ObservableSource<T> mSource;
+
+    private final CommandTracer mTracer;
+
+    private final String mName;
+
+    TracedSubscription(ObservableSource<T> source, CommandTracer tracer, String name) {
+        mSource = source;
+        mTracer = tracer;
+        mName = name;
+    }
+
+    @Override
+    protected void subscribeActual(Observer<? super T> observer) {
+        mTracer.beginSection(mName);
+        try {
+            mSource.subscribe(observer);
+        } finally {
+            mTracer.endSection();
+        }
+    }
+}
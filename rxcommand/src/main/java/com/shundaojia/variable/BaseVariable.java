@@ -0,0 +1,90 @@
+package com.shundaojia.variable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.Observer;
+import io.reactivex.subjects.BehaviorSubject;
+
+/**
+ * The observable side of the primitive and computed variables. Subclasses store their value, and
+ * box it only to send it to observers: writes made while nobody observes cost no allocation.
+ * <p>
+ * Values are sent by a queue-drain loop, one thread at a time. Every pass sends the current
+ * value if it differs from the last one sent, so observers receive the values in the order of
+ * the writes, but a value overwritten before a busy drain gets to it is skipped.
+ * <p>
+ * Like {@link Variable}, writes made inside {@link Variable#batch(Runnable)} are sent when the
+ * batch ends.
+ */
+abstract class BaseVariable<B> {
+
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private final BehaviorSubject<B> subject = BehaviorSubject.create();
+
+    /**
+     * Set by a new subscription, to send the current value even though nobody observes yet.
+     */
+    private volatile boolean refresh;
+
+    private final Batch.Member batchMember = this::drain;
+
+    private final Observable<B> observable = new Observable<B>() {
+        @Override
+        protected void subscribeActual(Observer<? super B> observer) {
+            // bring the subject up to date before it replays its value, and send what was
+            // written in between once the observer is added
+            refresh = true;
+            drain();
+            subject.subscribe(observer);
+            drain();
+        }
+    };
+
+    /**
+     * The current value, then every value written that differs from the previous one sent.
+     */
+    public final Observable<B> asObservable() {
+        return observable;
+    }
+
+    /**
+     * Called by subclasses after every write.
+     */
+    final void changed() {
+        if (!Batch.defer(batchMember)) {
+            drain();
+        }
+    }
+
+    /**
+     * Whether the current value differs from the last value sent, only called while draining.
+     */
+    abstract boolean unsent();
+
+    /**
+     * Boxes the current value and records it as the last value sent, only called while draining.
+     */
+    abstract B send();
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        for (; ; ) {
+            boolean forced = refresh;
+            if (forced) {
+                refresh = false;
+            }
+            if ((forced || subject.hasObservers()) && unsent()) {
+                subject.onNext(send());
+            }
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.shundaojia.variable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The variables written by the current thread inside {@link Variable#batch(Runnable)}, whose
+ * values are sent once the outermost batch ends.
+ */
+final class Batch {
+
+    /**
+     * A variable whose values can be sent later.
+     */
+    interface Member {
+
+        /**
+         * Sends the value written during the batch, only the latest one if there were several.
+         */
+        void flush();
+    }
+
+    private static final ThreadLocal<Batch> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The number of threads inside a batch, so that writes outside of any batch do not pay for
+     * the thread local lookup.
+     */
+    private static final AtomicInteger ACTIVE = new AtomicInteger();
+
+    private final LinkedHashSet<Member> changed = new LinkedHashSet<>();
+
+    private int depth;
+
+    private Batch() {
+    }
+
+    static void run(Runnable block) {
+        if (block == null) {
+            throw new NullPointerException("block is null");
+        }
+        Batch batch = CURRENT.get();
+        if (batch == null) {
+            batch = new Batch();
+            CURRENT.set(batch);
+            ACTIVE.incrementAndGet();
+        }
+        batch.depth++;
+        try {
+            block.run();
+        } finally {
+            if (batch.depth == 1) {
+                try {
+                    batch.flush();
+                } finally {
+                    batch.depth = 0;
+                    CURRENT.remove();
+                    ACTIVE.decrementAndGet();
+                }
+            } else {
+                batch.depth--;
+            }
+        }
+    }
+
+    /**
+     * @return whether the current thread is inside a batch, which will flush `member` when it ends
+     */
+    static boolean defer(Member member) {
+        if (ACTIVE.get() == 0) {
+            return false;
+        }
+        Batch batch = CURRENT.get();
+        if (batch == null) {
+            return false;
+        }
+        batch.changed.add(member);
+        return true;
+    }
+
+    /**
+     * Flushes the changed members in rounds, still inside the batch: the members changed by a
+     * round, such as the {@link ComputedVariable}s depending on the variables just sent, are
+     * flushed once by the next round.
+     */
+    private void flush() {
+        RuntimeException error = null;
+        while (!changed.isEmpty()) {
+            ArrayList<Member> round = new ArrayList<>(changed);
+            changed.clear();
+            for (Member member : round) {
+                try {
+                    member.flush();
+                } catch (RuntimeException e) {
+                    if (error == null) {
+                        error = e;
+                    }
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
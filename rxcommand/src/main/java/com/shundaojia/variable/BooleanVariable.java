@@ -0,0 +1,38 @@
+package com.shundaojia.variable;
+
+/**
+ * A boolean {@link Variable} that does not box its value, see {@link BaseVariable}.
+ */
+public final class BooleanVariable extends BaseVariable<Boolean> {
+
+    private volatile boolean value;
+
+    private boolean sent;
+
+    private boolean hasSent;
+
+    public BooleanVariable(boolean initial) {
+        value = initial;
+    }
+
+    public boolean value() {
+        return value;
+    }
+
+    public void setValue(boolean value) {
+        this.value = value;
+        changed();
+    }
+
+    @Override
+    boolean unsent() {
+        return !hasSent || value != sent;
+    }
+
+    @Override
+    Boolean send() {
+        sent = value;
+        hasSent = true;
+        return sent;
+    }
+}
@@ -0,0 +1,127 @@
+package com.shundaojia.variable;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * A value computed from other variables, such as whether a form is valid.
+ * <p>
+ * The computation reads the current values of its dependencies, e.g. with
+ * {@link Variable#value()}. It runs at most once per change of a dependency: {@link #value()}
+ * recomputes lazily, and {@link #asObservable()} shares one result between all observers,
+ * sending it when it differs from the previous one. Inside {@link Variable#batch(Runnable)}, the
+ * result is computed and sent once, after all the dependencies written by the batch.
+ * <p>
+ * Its observable can be given as the `enabledObservable` of a command.
+ */
+public final class ComputedVariable<R> extends BaseVariable<R> implements Disposable {
+
+    /**
+     * Computes the value from the current values of the dependencies.
+     */
+    public interface Compute<R> {
+        @NonNull
+        R compute();
+    }
+
+    /**
+     * @param compute      computes the value, from the current values of the dependencies
+     * @param dependencies the observables of the variables read by `compute`, any value they
+     *                     send marks the computed value as outdated
+     */
+    public static <R> ComputedVariable<R> create(@NonNull Compute<R> compute, @NonNull Observable<?>... dependencies) {
+        if (compute == null) {
+            throw new NullPointerException("compute is null");
+        }
+        if (dependencies == null) {
+            throw new NullPointerException("dependencies is null");
+        }
+        ComputedVariable<R> variable = new ComputedVariable<>(compute);
+        for (Observable<?> dependency : dependencies) {
+            variable.subscriptions.add(dependency.subscribe(value -> variable.invalidate()));
+        }
+        return variable;
+    }
+
+    private final Compute<R> compute;
+
+    private final CompositeDisposable subscriptions = new CompositeDisposable();
+
+    /**
+     * Incremented by every change of a dependency.
+     */
+    private final AtomicInteger version = new AtomicInteger();
+
+    private volatile Result<R> result;
+
+    private R sent;
+
+    private ComputedVariable(Compute<R> compute) {
+        this.compute = compute;
+    }
+
+    /**
+     * The value computed from the current values of the dependencies, computed again only if
+     * one of them changed since the last computation.
+     */
+    @NonNull
+    public R value() {
+        int version = this.version.get();
+        Result<R> result = this.result;
+        if (result != null && result.version == version) {
+            return result.value;
+        }
+        R value = compute.compute();
+        if (value == null) {
+            throw new NullPointerException("compute returned null");
+        }
+        this.result = new Result<>(value, version);
+        return value;
+    }
+
+    /**
+     * Stops tracking the dependencies, the value is no longer updated.
+     */
+    @Override
+    public void dispose() {
+        subscriptions.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return subscriptions.isDisposed();
+    }
+
+    private void invalidate() {
+        version.incrementAndGet();
+        changed();
+    }
+
+    @Override
+    boolean unsent() {
+        return sent == null || !sent.equals(value());
+    }
+
+    @Override
+    R send() {
+        sent = value();
+        return sent;
+    }
+
+    private static final class Result<R> {
+
+        final R value;
+
+        final int version;
+
+        Result(R value, int version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.shundaojia.variable;
+
+/**
+ * A double {@link Variable} that does not box its value, see {@link BaseVariable}. Values are
+ * compared by their bits, so NaN is equal to itself and 0.0 differs from -0.0.
+ */
+public final class DoubleVariable extends BaseVariable<Double> {
+
+    private volatile double value;
+
+    private long sentBits;
+
+    private boolean hasSent;
+
+    public DoubleVariable(double initial) {
+        value = initial;
+    }
+
+    public double value() {
+        return value;
+    }
+
+    public void setValue(double value) {
+        this.value = value;
+        changed();
+    }
+
+    @Override
+    boolean unsent() {
+        return !hasSent || Double.doubleToLongBits(value) != sentBits;
+    }
+
+    @Override
+    Double send() {
+        double value = this.value;
+        sentBits = Double.doubleToLongBits(value);
+        hasSent = true;
+        return value;
+    }
+}
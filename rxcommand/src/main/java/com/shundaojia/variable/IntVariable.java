@@ -0,0 +1,67 @@
+package com.shundaojia.variable;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * An int {@link Variable} that does not box its value, see {@link BaseVariable}.
+ */
+public final class IntVariable extends BaseVariable<Integer> {
+
+    private static final AtomicIntegerFieldUpdater<IntVariable> VALUE =
+            AtomicIntegerFieldUpdater.newUpdater(IntVariable.class, "value");
+
+    private volatile int value;
+
+    private int sent;
+
+    private boolean hasSent;
+
+    public IntVariable(int initial) {
+        value = initial;
+    }
+
+    public int value() {
+        return value;
+    }
+
+    public void setValue(int value) {
+        this.value = value;
+        changed();
+    }
+
+    /**
+     * Sets the value to `update` if the current value is `expect`.
+     *
+     * @return whether the value was set
+     */
+    public boolean compareAndSet(int expect, int update) {
+        if (VALUE.compareAndSet(this, expect, update)) {
+            changed();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Atomically adds `delta` to the value.
+     *
+     * @return the new value
+     */
+    public int addAndGet(int delta) {
+        int value = VALUE.addAndGet(this, delta);
+        changed();
+        return value;
+    }
+
+    @Override
+    boolean unsent() {
+        return !hasSent || value != sent;
+    }
+
+    @Override
+    Integer send() {
+        sent = value;
+        hasSent = true;
+        return sent;
+    }
+}
@@ -0,0 +1,67 @@
+package com.shundaojia.variable;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A long {@link Variable} that does not box its value, see {@link BaseVariable}.
+ */
+public final class LongVariable extends BaseVariable<Long> {
+
+    private static final AtomicLongFieldUpdater<LongVariable> VALUE =
+            AtomicLongFieldUpdater.newUpdater(LongVariable.class, "value");
+
+    private volatile long value;
+
+    private long sent;
+
+    private boolean hasSent;
+
+    public LongVariable(long initial) {
+        value = initial;
+    }
+
+    public long value() {
+        return value;
+    }
+
+    public void setValue(long value) {
+        this.value = value;
+        changed();
+    }
+
+    /**
+     * Sets the value to `update` if the current value is `expect`.
+     *
+     * @return whether the value was set
+     */
+    public boolean compareAndSet(long expect, long update) {
+        if (VALUE.compareAndSet(this, expect, update)) {
+            changed();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Atomically adds `delta` to the value.
+     *
+     * @return the new value
+     */
+    public long addAndGet(long delta) {
+        long value = VALUE.addAndGet(this, delta);
+        changed();
+        return value;
+    }
+
+    @Override
+    boolean unsent() {
+        return !hasSent || value != sent;
+    }
+
+    @Override
+    Long send() {
+        sent = value;
+        hasSent = true;
+        return sent;
+    }
+}
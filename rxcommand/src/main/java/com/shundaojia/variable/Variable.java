@@ -2,42 +2,286 @@ package com.shundaojia.variable;
 
 import android.support.annotation.NonNull;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 import io.reactivex.Observable;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.functions.BiPredicate;
 import io.reactivex.subjects.BehaviorSubject;
 import io.reactivex.subjects.Subject;
 
 /**
  * Created by listen on 2017/9/24.
+ * <p>
+ * A value that can be read and written from any thread without locking, and observed.
+ * <p>
+ * Every write atomically replaces the latest {@link Node} of a chain, and links it to the node
+ * it replaced. Values are sent by following that chain, so observers receive them in the order
+ * of the writes, and {@link #value()} never runs ahead of a write that is yet to be ordered.
+ * <p>
+ * {@link #asObservable()} sends the current value on subscription. A variable created with
+ * {@link #distinct(Object)} ignores writes of a value equivalent to the current one.
+ * <p>
+ * Writes made inside {@link #batch(Runnable)} are sent when the batch ends, see there.
  */
 
 public class Variable<T> {
 
-    private  T val;
+    /**
+     * Computes the next value of a variable from the current one, see
+     * {@link #updateAndGet(Updater)}. May be called several times when other threads write
+     * concurrently, so it should be free of side effects.
+     */
+    public interface Updater<T> {
+        @NonNull
+        T apply(@NonNull T current);
+    }
+
+    /**
+     * The node of the latest write.
+     */
+    private final AtomicReference<Node<T>> latest;
+
+    /**
+     * The node of the latest value sent, only accessed by the thread draining.
+     */
+    private Node<T> emitted;
+
+    private final AtomicInteger wip = new AtomicInteger();
+
+    /**
+     * Set when a batch ends, for the next drain to send only the latest value.
+     */
+    private volatile boolean latestOnly;
+
+    private final Batch.Member batchMember = () -> {
+        latestOnly = true;
+        drain();
+    };
 
     private final Subject<T> subject;
 
+    /**
+     * Whether two values are equivalent, null unless writes of an equivalent value are ignored.
+     */
+    private final BiPredicate<? super T, ? super T> comparer;
+
+    /**
+     * Create a variable ignoring writes of a value equal, by {@link Object#equals(Object)}, to
+     * the current one.
+     */
+    public static <T> Variable<T> distinct(@NonNull T initial) {
+        return new Variable<>(initial, (current, value) -> current.equals(value));
+    }
+
+    /**
+     * Create a variable ignoring writes of a value equivalent to the current one.
+     *
+     * @param comparer whether two values are equivalent, called with the current value first
+     */
+    public static <T> Variable<T> distinct(@NonNull T initial, @NonNull BiPredicate<? super T, ? super T> comparer) {
+        if (comparer == null) {
+            throw new NullPointerException("comparer is null");
+        }
+        return new Variable<>(initial, comparer);
+    }
+
+    /**
+     * Runs `block`, and sends the values of the variables it writes once it returns: every
+     * variable written sends its latest value once, in the order the variables were first
+     * written. Observers of one variable reading {@link #value()} of another one therefore see
+     * the state left by the whole block.
+     * <p>
+     * Only writes made by the current thread are deferred. Batches may be nested, the values are
+     * sent when the outermost one ends, even if it throws.
+     *
+     * @param block the writes to send together
+     */
+    public static void batch(@NonNull Runnable block) {
+        Batch.run(block);
+    }
+
     public Variable(@NonNull T initial) {
-        val = initial;
-        BehaviorSubject<T> subject = BehaviorSubject.create();
-        this.subject = subject.toSerialized();
+        this(initial, null);
+    }
+
+    private Variable(T initial, BiPredicate<? super T, ? super T> comparer) {
+        if (initial == null) {
+            throw new NullPointerException("initial is null");
+        }
+        Node<T> node = new Node<>(initial);
+        latest = new AtomicReference<>(node);
+        emitted = node;
+        subject = BehaviorSubject.createDefault(initial);
+        this.comparer = comparer;
     }
 
     @NonNull
     public T value() {
-        synchronized (this) {
-            return val;
-        }
+        return latest.get().value;
     }
 
     public void setValue(@NonNull T value) {
-        synchronized (this) {
-            this.val = value;
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        if (comparer == null) {
+            Node<T> node = new Node<>(value);
+            latest.getAndSet(node).next = node;
+            publish();
+            return;
+        }
+        Node<T> node = null;
+        for (; ; ) {
+            Node<T> current = latest.get();
+            if (equivalent(current.value, value)) {
+                return;
+            }
+            if (node == null) {
+                node = new Node<>(value);
+            }
+            if (latest.compareAndSet(current, node)) {
+                current.next = node;
+                publish();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sets the value to `update` if the current value is `expect`, compared by identity.
+     *
+     * @return whether the current value was `expect`
+     */
+    public boolean compareAndSet(@NonNull T expect, @NonNull T update) {
+        if (update == null) {
+            throw new NullPointerException("update is null");
+        }
+        Node<T> current = latest.get();
+        if (current.value != expect) {
+            return false;
+        }
+        if (comparer != null && equivalent(expect, update)) {
+            return true;
         }
-        subject.onNext(value);
+        Node<T> node = new Node<>(update);
+        if (!latest.compareAndSet(current, node)) {
+            return false;
+        }
+        current.next = node;
+        publish();
+        return true;
+    }
+
+    /**
+     * Atomically replaces the value with the result of `updater`.
+     *
+     * @return the previous value
+     */
+    @NonNull
+    public T getAndUpdate(@NonNull Updater<T> updater) {
+        return update(updater, false);
+    }
+
+    /**
+     * Atomically replaces the value with the result of `updater`.
+     *
+     * @return the new value
+     */
+    @NonNull
+    public T updateAndGet(@NonNull Updater<T> updater) {
+        return update(updater, true);
     }
 
+    /**
+     * The current value, then every value written.
+     */
     public Observable<T> asObservable() {
         return subject;
     }
 
+    /**
+     * @return the new value if `returnNew`, else the previous one
+     */
+    private T update(Updater<T> updater, boolean returnNew) {
+        if (updater == null) {
+            throw new NullPointerException("updater is null");
+        }
+        for (; ; ) {
+            Node<T> current = latest.get();
+            T value = updater.apply(current.value);
+            if (value == null) {
+                throw new NullPointerException("updater returned null");
+            }
+            if (comparer != null && equivalent(current.value, value)) {
+                return returnNew ? value : current.value;
+            }
+            Node<T> node = new Node<>(value);
+            if (latest.compareAndSet(current, node)) {
+                current.next = node;
+                publish();
+                return returnNew ? value : current.value;
+            }
+        }
+    }
+
+    private void publish() {
+        if (!Batch.defer(batchMember)) {
+            drain();
+        }
+    }
+
+    private boolean equivalent(T current, T value) {
+        try {
+            return comparer.test(current, value);
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    /**
+     * Sends the values written since the last drain. A writer links its node after replacing
+     * {@link #latest} and drains after linking, so a node not linked yet is picked up by the
+     * drain of its writer.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        for (; ; ) {
+            Node<T> node = emitted;
+            Node<T> next;
+            if (latestOnly) {
+                latestOnly = false;
+                while ((next = node.next) != null) {
+                    node = next;
+                }
+                if (node != emitted) {
+                    subject.onNext(node.value);
+                }
+            }
+            while ((next = node.next) != null) {
+                node = next;
+                subject.onNext(node.value);
+            }
+            emitted = node;
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                break;
+            }
+        }
+    }
+
+    private static final class Node<T> {
+
+        final T value;
+
+        volatile Node<T> next;
+
+        Node(T value) {
+            this.value = value;
+        }
+    }
 }
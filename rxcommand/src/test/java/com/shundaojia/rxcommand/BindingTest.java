@@ -0,0 +1,96 @@
+package com.shundaojia.rxcommand;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.PublishSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BindingTest {
+
+    @Rule
+    public final ImmediateSchedulersRule schedulers = new ImmediateSchedulersRule();
+
+    @Test
+    public void binding_sharesOneSubscriptionBetweenTargets() {
+        AtomicInteger subscriptions = new AtomicInteger();
+        BehaviorSubject<Boolean> enabled = BehaviorSubject.createDefault(true);
+        FakeView first = new FakeView();
+        FakeView second = new FakeView();
+
+        Binding binding = bind(enabled.doOnSubscribe(d -> subscriptions.incrementAndGet()), first, second);
+        enabled.onNext(false);
+
+        assertEquals(1, subscriptions.get());
+        assertEquals(2, first.mStates.size());
+        assertEquals(first.mStates, second.mStates);
+        assertFalse(binding.isDisposed());
+    }
+
+    @Test
+    public void dispose_stopsUpdatingTargets() {
+        BehaviorSubject<Boolean> enabled = BehaviorSubject.createDefault(true);
+        FakeView view = new FakeView();
+
+        Binding binding = bind(enabled, view);
+        binding.dispose();
+        enabled.onNext(false);
+
+        assertTrue(binding.isDisposed());
+        assertFalse(enabled.hasObservers());
+        assertEquals(1, view.mStates.size());
+    }
+
+    @Test
+    public void dispose_releasesTargetsWhileCommandIsAlive() {
+        PublishSubject<String> execution = PublishSubject.create();
+        RxCommand<String> command = RxCommand.create(o -> execution);
+        FakeView view = new FakeView();
+        WeakReference<FakeView> reference = new WeakReference<>(view);
+
+        Binding binding = bind(command.enabled(), view);
+        command.execute(null);
+        assertEquals(2, view.mStates.size());
+
+        // rotation: the activity and its views are destroyed, the command lives on
+        binding.dispose();
+        view = null;
+        for (int i = 0; i < 10 && reference.get() != null; i++) {
+            System.gc();
+        }
+
+        assertNull(reference.get());
+        execution.onComplete();
+        command.enabled().test().assertValue(true);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Binding bind(Observable<Boolean> enabled, FakeView... views) {
+        Consumer<? super Boolean>[] targets = new Consumer[views.length];
+        for (int i = 0; i < views.length; i++) {
+            targets[i] = views[i]::setEnabled;
+        }
+        return new Binding(enabled, targets);
+    }
+
+    private static final class FakeView {
+
+        private final List<Boolean> mStates = new ArrayList<>();
+
+        void setEnabled(boolean enabled) {
+            mStates.add(enabled);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.shundaojia.rxcommand;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+
+import static org.junit.Assert.assertEquals;
+
+public class CoalescingDispatcherTest {
+
+    @Test
+    public void coalesce_deliversLatestValue() {
+        CountingScheduler scheduler = new CountingScheduler();
+        CoalescingDispatcher dispatcher = CoalescingDispatcher.create(scheduler);
+        PublishSubject<Integer> subject = PublishSubject.create();
+
+        TestObserver<Integer> observer = subject.compose(dispatcher.coalesce()).test();
+
+        subject.onNext(1);
+        subject.onNext(2);
+        subject.onNext(3);
+
+        observer.assertNoValues();
+        assertEquals(1, scheduler.scheduled);
+
+        scheduler.delegate.triggerActions();
+
+        observer.assertValue(3);
+
+        subject.onNext(4);
+        subject.onComplete();
+        scheduler.delegate.triggerActions();
+
+        observer.assertValues(3, 4);
+        observer.assertComplete();
+        assertEquals(2, scheduler.scheduled);
+    }
+
+    @Test
+    public void commandsSharingDispatcher_oneDispatchForAllStates() {
+        CountingScheduler scheduler = new CountingScheduler();
+        CoalescingDispatcher dispatcher = CoalescingDispatcher.create(scheduler);
+
+        RxCommand<String> first = command(dispatcher);
+        RxCommand<String> second = command(dispatcher);
+
+        TestObserver<Boolean> firstExecuting = first.executing().test();
+        TestObserver<Boolean> firstEnabled = first.enabled().test();
+        TestObserver<Boolean> secondExecuting = second.executing().test();
+        TestObserver<Boolean> secondEnabled = second.enabled().test();
+
+        first.execute(null);
+        second.execute(null);
+
+        assertEquals(1, scheduler.scheduled);
+        firstExecuting.assertValue(false);
+        secondEnabled.assertValue(true);
+
+        scheduler.delegate.triggerActions();
+
+        firstExecuting.assertValues(false, true);
+        firstEnabled.assertValues(true, false);
+        secondExecuting.assertValues(false, true);
+        secondEnabled.assertValues(true, false);
+    }
+
+    @Test
+    public void delayedDispatch_collectsValuesOfAFrame() {
+        CountingScheduler scheduler = new CountingScheduler();
+        CoalescingDispatcher dispatcher = CoalescingDispatcher.create(scheduler, 16, TimeUnit.MILLISECONDS);
+        PublishSubject<Integer> subject = PublishSubject.create();
+
+        TestObserver<Integer> observer = subject.compose(dispatcher.coalesce()).test();
+
+        subject.onNext(1);
+        scheduler.delegate.advanceTimeBy(10, TimeUnit.MILLISECONDS);
+        subject.onNext(2);
+        scheduler.delegate.advanceTimeBy(10, TimeUnit.MILLISECONDS);
+
+        observer.assertValue(2);
+        assertEquals(1, scheduler.scheduled);
+    }
+
+    private static RxCommand<String> command(CoalescingDispatcher dispatcher) {
+        return RxCommand.<String>builder(o -> Observable.never())
+                .workScheduler(Schedulers.trampoline())
+                .deliveryScheduler(Schedulers.trampoline())
+                .stateDispatcher(dispatcher)
+                .build();
+    }
+
+    /**
+     * Counts the tasks scheduled on a {@link TestScheduler}.
+     */
+    private static final class CountingScheduler extends Scheduler {
+
+        final TestScheduler delegate = new TestScheduler();
+
+        int scheduled;
+
+        @Override
+        public Worker createWorker() {
+            final Worker worker = delegate.createWorker();
+            return new Worker() {
+                @Override
+                public Disposable schedule(@NonNull Runnable run, long delay, @NonNull TimeUnit unit) {
+                    scheduled++;
+                    return worker.schedule(run, delay, unit);
+                }
+
+                @Override
+                public void dispose() {
+                    worker.dispose();
+                }
+
+                @Override
+                public boolean isDisposed() {
+                    return worker.isDisposed();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.shundaojia.rxcommand;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandGroupTest {
+
+    @Rule
+    public final ImmediateSchedulersRule schedulers = new ImmediateSchedulersRule();
+
+    private final Map<String, PublishSubject<String>> executions = new HashMap<>();
+
+    @Test
+    public void executing_tracksAllMembers() {
+        CommandGroup group = CommandGroup.create();
+        RxCommand<String> a = command("a", group).build();
+        RxCommand<String> b = command("b", group).build();
+        TestObserver<Boolean> executing = group.executing().test();
+
+        a.execute(null);
+        b.execute(null);
+        assertTrue(group.anyExecuting());
+        executions.get("a").onComplete();
+        assertTrue(group.anyExecuting());
+        executions.get("b").onComplete();
+
+        assertFalse(group.anyExecuting());
+        executing.assertValues(false, true, false);
+    }
+
+    @Test
+    public void mutuallyExclusive_disablesOtherMembers() {
+        CommandGroup group = CommandGroup.mutuallyExclusive();
+        RxCommand<String> a = command("a", group).build();
+        RxCommand<String> b = command("b", group).allowsConcurrentExecution(true).build();
+        TestObserver<Boolean> aEnabled = a.enabled().test();
+        TestObserver<Boolean> bEnabled = b.enabled().test();
+
+        a.execute(null);
+        aEnabled.assertValues(true, false);
+        bEnabled.assertValues(true, false);
+        b.execute(null).test().assertError(IllegalStateException.class);
+        assertFalse(executions.containsKey("b"));
+
+        executions.get("a").onComplete();
+        aEnabled.assertValues(true, false, true);
+        bEnabled.assertValues(true, false, true);
+        b.execute(null);
+        assertTrue(executions.containsKey("b"));
+        aEnabled.assertValues(true, false, true, false);
+    }
+
+    @Test
+    public void mutuallyExclusive_startsQueuedCallOfOtherMember() {
+        CommandGroup group = CommandGroup.mutuallyExclusive();
+        RxCommand<String> a = command("a", group).build();
+        RxCommand<String> b = command("b", group).queue(1, QueueOverflow.REJECT).build();
+        TestObserver<Boolean> executing = group.executing().test();
+
+        a.execute(null);
+        TestObserver<String> queued = b.execute(null).test();
+        assertFalse(executions.containsKey("b"));
+
+        executions.get("a").onComplete();
+        assertTrue(executions.containsKey("b"));
+        executions.get("b").onNext("v");
+        queued.assertValue("v");
+        executing.assertValues(false, true);
+    }
+
+    @Test
+    public void fullMember_doesNotTakeSlotOfGroup() {
+        CommandGroup group = CommandGroup.create(2);
+        RxCommand<String> a = command("a", group).queue(1, QueueOverflow.REJECT).build();
+        RxCommand<String> b = command("b", group).build();
+        TestObserver<Boolean> bEnabled = b.enabled().test();
+
+        a.execute(null);
+        a.execute(null);
+        bEnabled.assertValues(true);
+        assertEquals(1, executions.size());
+    }
+
+    private RxCommand.Builder<String> command(String name, CommandGroup group) {
+        return RxCommand.builder((Object o) -> {
+            PublishSubject<String> subject = PublishSubject.create();
+            executions.put(name, subject);
+            return (Observable<String>) subject;
+        })
+                .group(group);
+    }
+}
@@ -0,0 +1,112 @@
+package com.shundaojia.rxcommand;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.reactivex.Observable;
+import io.reactivex.subjects.PublishSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CommandTracerTest {
+
+    @Rule
+    public final ImmediateSchedulersRule schedulers = new ImmediateSchedulersRule();
+
+    private final RecordingTracer tracer = new RecordingTracer();
+
+    @Test
+    public void tracer_wrapsFuncSubscriptionAndTerminalEvent() {
+        RxCommand<String> command = RxCommand.builder((Object o) -> Observable.just("v"))
+                .name("load")
+                .tracer(tracer)
+                .build();
+
+        command.execute(null).test().assertValue("v");
+        command.execute(null).test().assertValue("v");
+
+        assertEquals(Arrays.asList(
+                "async begin load#1 1",
+                "begin load#1 func",
+                "end",
+                "begin load#1 subscribe",
+                "begin load#1 onComplete",
+                "end",
+                "async end load#1 1",
+                "end",
+                "async begin load#2 2",
+                "begin load#2 func",
+                "end",
+                "begin load#2 subscribe",
+                "begin load#2 onComplete",
+                "end",
+                "async end load#2 2",
+                "end"), tracer.mEvents);
+    }
+
+    @Test
+    public void tracer_endsCancelledExecution() {
+        PublishSubject<String> subject = PublishSubject.create();
+        RxCommand<String> command = RxCommand.builder((Object o) -> subject)
+                .name("load")
+                .tracer(tracer)
+                .build();
+
+        command.execute(null);
+        command.cancel();
+
+        assertEquals("async end load#1 1", tracer.mEvents.get(tracer.mEvents.size() - 1));
+    }
+
+    @Test
+    public void chromeTraceWriter_writesEventArray() throws IOException {
+        StringWriter out = new StringWriter();
+        ChromeTraceWriter writer = new ChromeTraceWriter(out);
+        RxCommand<String> command = RxCommand.builder((Object o) -> Observable.<String>error(new IOException()))
+                .name("save \"draft\"")
+                .tracer(writer)
+                .build();
+
+        command.execute(null).test().assertError(IOException.class);
+        writer.close();
+
+        String json = out.toString();
+        assertTrue(json.startsWith("[\n{\"ph\":\"b\",\"name\":\"save \\\"draft\\\"#1\",\"cat\":\"rxcommand\",\"id\":1,"));
+        assertTrue(json.contains("{\"ph\":\"B\",\"name\":\"save \\\"draft\\\"#1 onError\""));
+        assertTrue(json.contains("{\"ph\":\"e\",\"name\":\"save \\\"draft\\\"#1\",\"cat\":\"rxcommand\",\"id\":1,"));
+        assertTrue(json.endsWith("}\n]\n"));
+        assertEquals(8, json.split("\"ph\"").length - 1);
+    }
+
+    private static final class RecordingTracer implements CommandTracer {
+
+        private final List<String> mEvents = new ArrayList<>();
+
+        @Override
+        public void beginSection(String name) {
+            mEvents.add("begin " + name);
+        }
+
+        @Override
+        public void endSection() {
+            mEvents.add("end");
+        }
+
+        @Override
+        public void beginAsyncSection(String name, int cookie) {
+            mEvents.add("async begin " + name + " " + cookie);
+        }
+
+        @Override
+        public void endAsyncSection(String name, int cookie) {
+            mEvents.add("async end " + name + " " + cookie);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.shundaojia.rxcommand;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subscribers.TestSubscriber;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FlowableCommandTest {
+
+    private final static String VALUE = "value";
+
+    @Rule
+    public ImmediateSchedulersRule schedulers = new ImmediateSchedulersRule();
+
+    @Test
+    public void beforeExecution_defaultValue() {
+        FlowableCommand<String> command = FlowableCommand.create(Observable.just(true), it -> Flowable.empty());
+
+        command.executionFlowables()
+                .test()
+                .assertNoValues();
+
+        command.errors()
+                .test()
+                .assertNoValues();
+
+        command.executing()
+                .test()
+                .assertValue(false);
+
+        command.enabled()
+                .test()
+                .assertValue(true);
+    }
+
+    @Test
+    public void executeWhenNotEnable_emitIllegalStateException() {
+        FlowableCommand<String> command = FlowableCommand.create(Observable.just(false), it -> Flowable.empty());
+        command.execute(null)
+                .test()
+                .assertError(IllegalStateException.class);
+    }
+
+    @Test
+    public void anErrorOccurredDuringExecution_emitThrowableAsValue() {
+        final Throwable throwable = new IOException("something wrong");
+        FlowableCommand<String> command = FlowableCommand.create(o -> Flowable.error(throwable));
+
+        TestSubscriber<Throwable> errors = command.errors().test();
+        TestSubscriber<String> latest = command.switchToLatest().test();
+
+        command.execute(null)
+                .test()
+                .assertError(throwable);
+
+        errors.assertValue(throwable);
+        latest.assertNoValues();
+        latest.assertNoErrors();
+    }
+
+    @Test
+    public void executeAnotherTaskWhenExecuting_notAllowed() {
+        FlowableCommand<String> command = FlowableCommand.create(o -> Flowable.never());
+
+        TestSubscriber<Boolean> executing = command.executing().test();
+
+        command.execute(null);
+
+        executing.assertValues(false, true);
+        command.enabled()
+                .test()
+                .assertValue(false);
+        command.execute(null)
+                .test()
+                .assertError(IllegalStateException.class);
+    }
+
+    @Test
+    public void switchToLatest_allowingConcurrent_onlyLatestValues() {
+        FlowableCommand<String> command = FlowableCommand.create(o -> Flowable.just((String) o));
+        command.setAllowsConcurrentExecution(true);
+
+        TestSubscriber<String> latest = command.switchToLatest().test();
+
+        command.execute("1");
+        command.execute("2");
+
+        latest.assertValues("1", "2");
+        command.executing()
+                .test()
+                .assertValue(false);
+    }
+
+    @Test
+    public void executeWithoutSubscriber_terminates() {
+        FlowableCommand<Integer> command = FlowableCommand.create(o -> Flowable.range(0, 1000));
+        TestSubscriber<Boolean> executing = command.executing().test();
+
+        command.execute(null);
+        command.execute(null);
+
+        command.errors()
+                .test()
+                .assertNoValues();
+        executing.assertValues(false, true, false, true, false);
+    }
+
+    @Test
+    public void executeWithoutSubscriber_noReplay_dropsValuesAndTerminates() {
+        FlowableCommand<Integer> command = FlowableCommand.<Integer>builder(o -> Flowable.range(0, 1000))
+                .replayPolicy(ReplayPolicy.none())
+                .build();
+        TestSubscriber<Boolean> executing = command.executing().test();
+
+        command.execute(null);
+
+        executing.assertValues(false, true, false);
+        command.execute(null)
+                .test()
+                .assertNoValues();
+    }
+
+    @Test
+    public void slowSubscriber_noReplay_valuesRequestedAtItsPace() {
+        final AtomicLong emitted = new AtomicLong();
+        FlowableCommand<Integer> command = FlowableCommand.<Integer>builder(o -> Flowable.range(0, 1000000)
+                .doOnNext(i -> emitted.incrementAndGet()))
+                .replayPolicy(ReplayPolicy.none())
+                .build();
+
+        TestSubscriber<Integer> slow = command.switchToLatest().test(0);
+        TestSubscriber<Boolean> executing = command.executing().test();
+
+        command.execute(null);
+        slow.request(10);
+
+        slow.assertValueCount(10);
+        // bounded by the prefetch of the operators between the execution and the subscriber
+        assertTrue("emitted " + emitted.get(), emitted.get() <= 3 * Flowable.bufferSize() + 10);
+        executing.assertValues(false, true);
+
+        slow.request(Long.MAX_VALUE);
+
+        slow.assertValueCount(1000000);
+        executing.assertValues(false, true, false);
+    }
+
+    @Test
+    public void valuesBackpressureLatest_dropsValuesOfSourceIgnoringRequests() {
+        TestScheduler work = new TestScheduler();
+        FlowableCommand<Integer> command = FlowableCommand.<Integer>builder(o -> Observable.range(0, 1000)
+                .toFlowable(BackpressureStrategy.MISSING))
+                .workScheduler(work)
+                .deliveryScheduler(Schedulers.trampoline())
+                .replayPolicy(ReplayPolicy.none())
+                .valuesBackpressure(BackpressureStrategy.LATEST)
+                .build();
+
+        TestSubscriber<Integer> slow = command.execute(null).test(0);
+        work.triggerActions();
+
+        slow.request(Long.MAX_VALUE);
+
+        // the prefetch of the multicast, then the latest value
+        slow.assertValueCount(Flowable.bufferSize() + 1);
+        assertEquals(Integer.valueOf(999), slow.values().get(Flowable.bufferSize()));
+        slow.assertNoErrors().assertComplete();
+    }
+
+}
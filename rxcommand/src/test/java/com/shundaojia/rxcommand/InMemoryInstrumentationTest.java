@@ -0,0 +1,129 @@
+package com.shundaojia.rxcommand;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.subjects.PublishSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryInstrumentationTest {
+
+    @Rule
+    public final ImmediateSchedulersRule schedulers = new ImmediateSchedulersRule();
+
+    private final InMemoryInstrumentation instrumentation = new InMemoryInstrumentation();
+
+    private final Map<String, PublishSubject<String>> executions = new HashMap<>();
+
+    @Test
+    public void metrics_countExecutionsByOutcome() {
+        RxCommand<String> command = command(3);
+
+        command.execute("1");
+        command.execute("2");
+        command.execute("3");
+        command.execute("4").test().assertError(IllegalStateException.class);
+
+        executions.get("1").onNext("a");
+        executions.get("1").onComplete();
+        executions.get("2").onError(new IOException());
+        command.cancelAll();
+
+        InMemoryInstrumentation.Metrics metrics = instrumentation.metrics("test");
+        assertEquals(3, metrics.executionCount());
+        assertEquals(1, metrics.completedCount());
+        assertEquals(1, metrics.failedCount());
+        assertEquals(1, metrics.cancelledCount());
+        assertEquals(1, metrics.rejectedCount());
+        assertEquals(3, metrics.peakConcurrency());
+        assertEquals(1, metrics.errorCount(IOException.class));
+        assertEquals(0, metrics.errorCount(IllegalStateException.class));
+        assertEquals(1.0 / 3, metrics.errorRate(), 1e-9);
+        assertEquals(3, metrics.duration().count());
+        assertEquals(1, metrics.timeToFirstValue().count());
+    }
+
+    @Test
+    public void metrics_countFuncFailuresAsFailed() {
+        RxCommand<String> command = RxCommand.<String>builder(o -> {
+            throw new IOException();
+        })
+                .name("test")
+                .instrumentation(instrumentation)
+                .build();
+
+        command.execute(null).test().assertError(IOException.class);
+        command.execute(null).test().assertError(IOException.class);
+
+        InMemoryInstrumentation.Metrics metrics = instrumentation.metrics("test");
+        assertEquals(2, metrics.executionCount());
+        assertEquals(2, metrics.failedCount());
+        assertEquals(2, metrics.errorCount(IOException.class));
+        assertEquals(1.0, metrics.errorRate(), 1e-9);
+        assertEquals(2, metrics.duration().count());
+    }
+
+    @Test
+    public void metrics_nullUntilCommandBuilt() {
+        assertNull(instrumentation.metrics("test"));
+        command(1);
+        assertEquals(0, instrumentation.metrics("test").executionCount());
+    }
+
+    @Test
+    public void histogram_percentileBoundsDurations() {
+        InMemoryInstrumentation.Histogram histogram = instrumentation.recorder("h").duration();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+
+        long p50 = histogram.percentile(50, TimeUnit.NANOSECONDS);
+        long p99 = histogram.percentile(99, TimeUnit.NANOSECONDS);
+        assertTrue(p50 >= TimeUnit.MILLISECONDS.toNanos(1) && p50 < TimeUnit.MILLISECONDS.toNanos(2));
+        assertTrue(p99 >= TimeUnit.MILLISECONDS.toNanos(100) && p99 < TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(100, histogram.count());
+        assertEquals(0, instrumentation.recorder("empty").duration().percentile(99, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void stripedCounter_sumsConcurrentIncrements() throws InterruptedException {
+        StripedCounter counter = new StripedCounter();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    counter.increment();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, counter.sum());
+    }
+
+    private RxCommand<String> command(int maxConcurrency) {
+        return RxCommand.builder((Object o) -> {
+            PublishSubject<String> subject = PublishSubject.create();
+            executions.put((String) o, subject);
+            return (Observable<String>) subject;
+        })
+                .name("test")
+                .maxConcurrency(maxConcurrency)
+                .instrumentation(instrumentation)
+                .build();
+    }
+}
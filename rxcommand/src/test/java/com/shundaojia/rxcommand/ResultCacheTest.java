@@ -0,0 +1,149 @@
+package com.shundaojia.rxcommand;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+
+import static org.junit.Assert.assertEquals;
+
+public class ResultCacheTest {
+
+    @Rule
+    public final ImmediateSchedulersRule schedulers = new ImmediateSchedulersRule();
+
+    @Test
+    public void sameInput_servedFromCache() {
+        AtomicInteger calls = new AtomicInteger();
+        ResultCache<String> cache = ResultCache.create(8);
+        RxCommand<String> command = RxCommand.builder((Object o) -> {
+            calls.incrementAndGet();
+            return Observable.just(o + "-a", o + "-b");
+        }).cache(cache).build();
+        TestObserver<Observable<String>> executions = command.executionObservables().test();
+
+        command.execute("x").test().assertValues("x-a", "x-b").assertComplete();
+        TestObserver<Boolean> executing = command.executing().test();
+        command.execute("x").test().assertValues("x-a", "x-b").assertComplete();
+
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        executions.assertValueCount(2);
+        executing.assertValue(false);
+    }
+
+    @Test
+    public void busyCommand_rejectsCachedInput() {
+        PublishSubject<String> running = PublishSubject.create();
+        ResultCache<String> cache = ResultCache.create(8);
+        RxCommand<String> command = RxCommand.builder((Object o) -> "x".equals(o) ? Observable.just("x-a") : running)
+                .cache(cache)
+                .build();
+
+        command.execute("x").test().assertValue("x-a");
+        command.execute("y");
+        command.execute("x").test().assertError(IllegalStateException.class);
+        assertEquals(0, cache.hitCount());
+
+        running.onComplete();
+        command.execute("x").test().assertValue("x-a");
+        assertEquals(1, cache.hitCount());
+    }
+
+    @Test
+    public void rejectedCall_notCountedAsMiss() {
+        PublishSubject<String> running = PublishSubject.create();
+        ResultCache<String> cache = ResultCache.create(8);
+        RxCommand<String> command = RxCommand.builder((Object o) -> running)
+                .cache(cache)
+                .queue(1, QueueOverflow.REJECT)
+                .build();
+
+        command.execute("x");
+        command.execute("y");
+        command.execute("z").test().assertError(IllegalStateException.class);
+        assertEquals(1, cache.missCount());
+
+        running.onComplete();
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    public void failedExecution_notCached() {
+        AtomicInteger calls = new AtomicInteger();
+        ResultCache<String> cache = ResultCache.create(8);
+        RxCommand<String> command = RxCommand.builder((Object o) -> {
+            calls.incrementAndGet();
+            return Observable.<String>error(new IOException());
+        }).cache(cache).build();
+
+        command.execute("x").test().assertError(IOException.class);
+        command.execute("x").test().assertError(IOException.class);
+
+        assertEquals(2, calls.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void expiredResult_runsFuncAgain() {
+        TestScheduler clock = new TestScheduler();
+        AtomicInteger calls = new AtomicInteger();
+        ResultCache<Integer> cache = ResultCache.create(8, 10, TimeUnit.SECONDS, clock);
+        RxCommand<Integer> command = RxCommand.builder((Object o) -> Observable.just(calls.incrementAndGet()))
+                .cache(cache)
+                .build();
+
+        command.execute("x").test().assertValue(1);
+        clock.advanceTimeBy(9, TimeUnit.SECONDS);
+        command.execute("x").test().assertValue(1);
+        clock.advanceTimeBy(1, TimeUnit.SECONDS);
+        command.execute("x").test().assertValue(2);
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    public void fullCache_evictsLeastRecentlyUsed() {
+        AtomicInteger calls = new AtomicInteger();
+        ResultCache<String> cache = ResultCache.create(2);
+        RxCommand<String> command = RxCommand.builder((Object o) -> {
+            calls.incrementAndGet();
+            return Observable.just((String) o);
+        }).cache(cache).build();
+
+        command.execute("a");
+        command.execute("b");
+        command.execute("a");
+        command.execute("c");
+        assertEquals(3, calls.get());
+
+        command.execute("a");
+        assertEquals(3, calls.get());
+        command.execute("b");
+        assertEquals(4, calls.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void invalidate_runsFuncAgain() {
+        AtomicInteger calls = new AtomicInteger();
+        ResultCache<Integer> cache = ResultCache.create(8);
+        RxCommand<Integer> command = RxCommand.builder((Object o) -> Observable.just(calls.incrementAndGet()))
+                .cache(cache)
+                .build();
+
+        command.execute(null).test().assertValue(1);
+        cache.invalidate(null);
+        command.execute(null).test().assertValue(2);
+        command.execute(null).test().assertValue(2);
+    }
+}
@@ -0,0 +1,140 @@
+package com.shundaojia.rxcommand;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+    @Rule
+    public final ImmediateSchedulersRule schedulers = new ImmediateSchedulersRule();
+
+    private final TestScheduler clock = new TestScheduler();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final AtomicInteger subscriptions = new AtomicInteger();
+
+    @Test
+    public void retry_resubscribesWithoutCallingFuncAgain() {
+        RxCommand<String> command = command(failing(2), RetryPolicy.builder(3).scheduler(clock).build());
+        TestObserver<Throwable> errors = command.errors().test();
+
+        TestObserver<String> observer = command.execute(null).test();
+        clock.triggerActions();
+
+        observer.assertValue("v").assertComplete();
+        errors.assertNoValues();
+        assertEquals(1, calls.get());
+        assertEquals(3, subscriptions.get());
+        assertEquals(3, command.attemptCount());
+    }
+
+    @Test
+    public void retry_reportsOnlyLastFailure() {
+        RxCommand<String> command = command(failing(5), RetryPolicy.builder(3).scheduler(clock).build());
+        TestObserver<Throwable> errors = command.errors().test();
+        TestObserver<Boolean> executing = command.executing().test();
+
+        command.execute(null).test();
+        clock.triggerActions();
+
+        errors.assertValueCount(1);
+        assertEquals(3, subscriptions.get());
+        executing.assertValues(false, true, false);
+    }
+
+    @Test
+    public void retry_waitsExponentialBackoff() {
+        RetryPolicy policy = RetryPolicy.builder(4)
+                .backoff(100, 250, TimeUnit.MILLISECONDS)
+                .scheduler(clock)
+                .build();
+        RxCommand<String> command = command(failing(3), policy);
+
+        command.execute(null).test();
+        assertEquals(1, subscriptions.get());
+        clock.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        assertEquals(2, subscriptions.get());
+        clock.advanceTimeBy(199, TimeUnit.MILLISECONDS);
+        assertEquals(2, subscriptions.get());
+        clock.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        assertEquals(3, subscriptions.get());
+        // capped by the maximum delay
+        clock.advanceTimeBy(250, TimeUnit.MILLISECONDS);
+        assertEquals(4, subscriptions.get());
+    }
+
+    @Test
+    public void retry_skipsFailuresRejectedByPredicate() {
+        RetryPolicy policy = RetryPolicy.builder(3)
+                .retryIf(error -> !(error instanceof IllegalArgumentException))
+                .scheduler(clock)
+                .build();
+        RxCommand<String> command = command(Observable.<String>error(new IllegalArgumentException())
+                .doOnSubscribe(d -> subscriptions.incrementAndGet()), policy);
+
+        command.execute(null).test().assertError(IllegalArgumentException.class);
+        assertEquals(1, subscriptions.get());
+    }
+
+    @Test
+    public void jitter_shortensDelayWithinBounds() {
+        RetryPolicy policy = RetryPolicy.builder(10)
+                .backoff(1000, 1000, TimeUnit.MILLISECONDS)
+                .jitter(0.5)
+                .build();
+        for (int i = 0; i < 100; i++) {
+            long delay = policy.delayMillis(1);
+            assertTrue(delay >= 500 && delay <= 1000);
+        }
+    }
+
+    @Test
+    public void timeout_failsEachAttempt() {
+        RxCommand<String> command = RxCommand.builder((Object o) -> Observable.<String>never()
+                .doOnSubscribe(d -> subscriptions.incrementAndGet()))
+                .timeout(1, TimeUnit.SECONDS, clock)
+                .retry(RetryPolicy.builder(2).scheduler(clock).build())
+                .build();
+        TestObserver<Throwable> errors = command.errors().test();
+
+        TestObserver<String> observer = command.execute(null).test();
+        clock.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertEquals(2, subscriptions.get());
+        errors.assertNoValues();
+
+        clock.advanceTimeBy(1, TimeUnit.SECONDS);
+        observer.assertError(TimeoutException.class);
+        errors.assertValueCount(1);
+    }
+
+    /**
+     * Fails the first `failures` subscriptions, then sends "v".
+     */
+    private Observable<String> failing(int failures) {
+        return Observable.defer(() -> subscriptions.incrementAndGet() <= failures
+                ? Observable.<String>error(new IOException())
+                : Observable.just("v"));
+    }
+
+    private RxCommand<String> command(Observable<String> observable, RetryPolicy policy) {
+        return RxCommand.builder((Object o) -> {
+            calls.incrementAndGet();
+            return observable;
+        })
+                .retry(policy)
+                .build();
+    }
+}
@@ -0,0 +1,111 @@
+package com.shundaojia.rxcommand;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Commands built with explicit schedulers, these tests do not replace the main thread
+ * scheduler, so they would fail if a command touched it.
+ */
+public class RxCommandSchedulersTest {
+
+    private final static String VALUE = "value";
+
+    @Test
+    public void workScheduler_subscribesExecutionOnIt() {
+        TestScheduler work = new TestScheduler();
+        RxCommand<String> command = RxCommand.<String>builder(o -> Observable.just(VALUE))
+                .workScheduler(work)
+                .deliveryScheduler(Schedulers.trampoline())
+                .build();
+
+        TestObserver<Boolean> executing = command.executing().test();
+        TestObserver<String> observer = command.execute(null).test();
+
+        observer.assertNoValues();
+        executing.assertValues(false, true);
+
+        work.triggerActions();
+
+        observer.assertValue(VALUE);
+        observer.assertComplete();
+        executing.assertValues(false, true, false);
+    }
+
+    @Test
+    public void deliveryScheduler_sendsOutputsOnIt() {
+        TestScheduler delivery = new TestScheduler();
+        final Throwable throwable = new IOException("something wrong");
+        RxCommand<String> command = RxCommand.<String>builder(o -> Observable.error(throwable))
+                .workScheduler(Schedulers.trampoline())
+                .deliveryScheduler(delivery)
+                .build();
+
+        TestObserver<Throwable> errors = command.errors().test();
+        TestObserver<Boolean> executing = command.executing().test();
+        TestObserver<Boolean> enabled = command.enabled().test();
+
+        command.execute(null);
+
+        errors.assertNoValues();
+        executing.assertValue(false);
+        enabled.assertValue(true);
+
+        delivery.triggerActions();
+
+        errors.assertValue(throwable);
+        executing.assertValues(false, true, false);
+        enabled.assertValues(true, false, true);
+    }
+
+    @Test
+    public void groupDeliveryScheduler_sendsExecutingOnIt() {
+        TestScheduler delivery = new TestScheduler();
+        CommandGroup group = CommandGroup.builder()
+                .maxConcurrency(1)
+                .deliveryScheduler(delivery)
+                .build();
+        RxCommand<String> command = RxCommand.<String>builder(o -> Observable.never())
+                .workScheduler(Schedulers.trampoline())
+                .deliveryScheduler(delivery)
+                .group(group)
+                .build();
+
+        TestObserver<Boolean> executing = group.executing().test();
+        command.execute(null);
+        executing.assertValue(false);
+
+        delivery.triggerActions();
+
+        executing.assertValues(false, true);
+        assertEquals(1, group.maxConcurrency());
+    }
+
+    @Test
+    public void builder_appliesOptions() {
+        RxCommand<String> command = RxCommand.<String>builder(o -> Observable.never())
+                .workScheduler(Schedulers.trampoline())
+                .deliveryScheduler(Schedulers.trampoline())
+                .allowsConcurrentExecution(true)
+                .replayPolicy(ReplayPolicy.none())
+                .build();
+
+        command.execute(null);
+
+        command.enabled()
+                .test()
+                .assertValue(true);
+        command.execute(null)
+                .test()
+                .assertNoErrors();
+    }
+
+}
@@ -4,12 +4,27 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Observable;
+import io.reactivex.exceptions.CompositeException;
 import io.reactivex.observers.TestObserver;
 import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.PublishSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by listen on 2017/6/16.
@@ -94,6 +109,14 @@ public class RxCommandTest {
                 .assertError(IllegalStateException.class);
     }
 
+    @Test
+    public void executeBeforeEnabledSendsValue_doesNotBlock() {
+        RxCommand<String> command = RxCommand.create(Observable.never(), it -> Observable.just(VALUE));
+        command.execute(null)
+                .test()
+                .assertValue(VALUE);
+    }
+
     @Test
     public void executionObservables_noErrors() {
         RxCommand<String> command = RxCommand.create(o -> {
@@ -157,6 +180,25 @@ public class RxCommandTest {
 
     }
 
+    @Test
+    public void valuesThenErrorDuringExecution_emitThrowableOnce() {
+        final Throwable throwable = new IOException("something wrong");
+        RxCommand<Integer> command = RxCommand.create(o -> Observable.range(0, 100)
+                .concatWith(Observable.error(throwable)));
+
+        TestObserver<Throwable> errorsObserver = command.errors().test();
+        TestObserver<Integer> valuesObserver = command.switchToLatest().test();
+
+        command.execute(null)
+                .test()
+                .assertValueCount(100)
+                .assertError(throwable);
+
+        errorsObserver.assertValue(throwable);
+        valuesObserver.assertValueCount(100);
+        valuesObserver.assertNoErrors();
+    }
+
     @Test
     public void anErrorOccurredDuringExecution_noValue() {
         final Throwable throwable = new Exception("something wrong");
@@ -216,6 +258,33 @@ public class RxCommandTest {
         command.executing().test().assertValue(false);
     }
 
+    @Test
+    public void concurrentExecutionsTerminatingOnManyThreads_showAndHideLoadingOnce() {
+        RxCommand<String> command = RxCommand.create(o -> Observable.just((String) o)
+                .subscribeOn(Schedulers.computation())
+                .delay(20, TimeUnit.MILLISECONDS, Schedulers.computation())
+        );
+        command.setAllowsConcurrentExecution(true);
+
+        TestObserver<Boolean> executingObserver = command.executing().test();
+
+        for (int i = 0; i < 200; i++) {
+            command.execute(String.valueOf(i));
+        }
+
+        // wait
+        try {
+            Thread.sleep(150);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        executingObserver.assertValues(false, true, false);
+        command.enabled()
+                .test()
+                .assertValue(true);
+    }
+
     @Test
     public void executeAnotherTaskWhenExecuting_notAllowed() {
 
@@ -397,4 +466,492 @@ public class RxCommandTest {
 
     }
 
+    @Test
+    public void defaultReplayPolicy_replaysBoundedValues() {
+        RxCommand<Integer> command = RxCommand.create(o -> Observable.range(0, 1000000));
+
+        Observable<Integer> execution = command.execute(null);
+
+        execution.test()
+                .assertValueCount(ReplayPolicy.DEFAULT_SIZE)
+                .assertComplete();
+        execution.lastElement()
+                .test()
+                .assertValue(999999);
+    }
+
+    @Test
+    public void noneReplayPolicy_replaysOnlyTerminalEvent() {
+        RxCommand<Integer> command = RxCommand.create(o -> Observable.range(0, 1000000));
+        command.setReplayPolicy(ReplayPolicy.none());
+
+        command.execute(null)
+                .test()
+                .assertNoValues()
+                .assertComplete();
+    }
+
+    @Test
+    public void boundedReplayPolicy_releasesEarlyValuesDuringExecution() {
+        final WeakReference<?>[] first = new WeakReference<?>[1];
+        RxCommand<Object> command = RxCommand.create(o -> Observable.range(0, 1000000)
+                .map(i -> {
+                    Object value = new Object();
+                    if (i == 0) {
+                        first[0] = new WeakReference<>(value);
+                    }
+                    return value;
+                }));
+        command.setReplayPolicy(ReplayPolicy.last(16));
+
+        Observable<Object> execution = command.execute(null);
+
+        for (int i = 0; i < 10 && first[0].get() != null; i++) {
+            System.gc();
+        }
+
+        assertNull(first[0].get());
+        execution.test()
+                .assertValueCount(16)
+                .assertComplete();
+    }
+
+    @Test
+    public void queue_runsWaitingExecutionsInOrder() {
+        Map<String, PublishSubject<String>> executions = new HashMap<>();
+        RxCommand<String> command = RxCommand.builder((Object o) -> subject(executions, (String) o))
+                .queue(2, QueueOverflow.REJECT)
+                .build();
+
+        TestObserver<String> first = command.execute("1").test();
+        TestObserver<String> second = command.execute("2").test();
+        TestObserver<String> third = command.execute("3").test();
+        assertEquals(1, executions.size());
+
+        executions.get("1").onNext("1");
+        executions.get("1").onComplete();
+        first.assertValue("1").assertComplete();
+        assertEquals(2, executions.size());
+
+        executions.get("2").onNext("2");
+        executions.get("2").onComplete();
+        second.assertValue("2").assertComplete();
+
+        executions.get("3").onNext("3");
+        executions.get("3").onComplete();
+        third.assertValue("3").assertComplete();
+    }
+
+    @Test
+    public void queue_startsNextExecutionAfterObserversSawPreviousEnd() {
+        List<String> events = new ArrayList<>();
+        Map<String, PublishSubject<String>> executions = new HashMap<>();
+        RxCommand<String> command = RxCommand.builder((Object o) -> {
+            events.add("start " + o);
+            return subject(executions, (String) o);
+        })
+                .queue(1, QueueOverflow.REJECT)
+                .build();
+        command.executing().subscribe(executing -> events.add("executing " + executing));
+
+        command.execute("1").subscribe(value -> {
+        }, error -> events.add("error 1"));
+        command.execute("2").subscribe(value -> {
+        }, error -> {
+        }, () -> events.add("complete 2"));
+        executions.get("1").onError(new IOException());
+        executions.get("2").onComplete();
+
+        assertEquals(Arrays.asList("executing false", "executing true", "start 1",
+                "error 1", "start 2", "complete 2", "executing false"), events);
+    }
+
+    @Test
+    public void queue_rejectsWaitingExecutionsOnceDisabled() {
+        Map<String, PublishSubject<String>> executions = new HashMap<>();
+        BehaviorSubject<Boolean> enabled = BehaviorSubject.createDefault(true);
+        RxCommand<String> command = RxCommand.builder((Object o) -> subject(executions, (String) o))
+                .enabled(enabled)
+                .queue(2, QueueOverflow.REJECT)
+                .build();
+        TestObserver<Boolean> executing = command.executing().test();
+
+        command.execute("1");
+        TestObserver<String> second = command.execute("2").test();
+        TestObserver<String> third = command.execute("3").test();
+        enabled.onNext(false);
+        executions.get("1").onComplete();
+
+        second.assertError(IllegalStateException.class);
+        third.assertError(IllegalStateException.class);
+        assertEquals(1, executions.size());
+        executing.assertValues(false, true, false);
+
+        enabled.onNext(true);
+        command.execute("4");
+        assertEquals(2, executions.size());
+    }
+
+    @Test
+    public void queueDropOldest_completesEvictedCall() {
+        Map<String, PublishSubject<String>> executions = new HashMap<>();
+        RxCommand<String> command = RxCommand.builder((Object o) -> subject(executions, (String) o))
+                .queue(1, QueueOverflow.DROP_OLDEST)
+                .build();
+
+        command.execute("1");
+        TestObserver<String> second = command.execute("2").test();
+        TestObserver<String> third = command.execute("3").test();
+
+        second.assertNoValues().assertComplete();
+        command.enabled()
+                .test()
+                .assertValue(true);
+
+        executions.get("1").onComplete();
+        assertEquals(null, executions.get("2"));
+        executions.get("3").onNext("3");
+        third.assertValue("3");
+    }
+
+    @Test
+    public void queueDropNewest_completesIncomingCall() {
+        Map<String, PublishSubject<String>> executions = new HashMap<>();
+        RxCommand<String> command = RxCommand.builder((Object o) -> subject(executions, (String) o))
+                .queue(1, QueueOverflow.DROP_NEWEST)
+                .build();
+
+        command.execute("1");
+        TestObserver<String> second = command.execute("2").test();
+        command.execute("3")
+                .test()
+                .assertNoValues()
+                .assertComplete();
+
+        executions.get("1").onComplete();
+        assertNull(executions.get("3"));
+        executions.get("2").onNext("2");
+        second.assertValue("2");
+    }
+
+    @Test
+    public void queueReject_disablesCommandWhileFull() {
+        Map<String, PublishSubject<String>> executions = new HashMap<>();
+        RxCommand<String> command = RxCommand.builder((Object o) -> subject(executions, (String) o))
+                .queue(1, QueueOverflow.REJECT)
+                .build();
+        TestObserver<Boolean> enabled = command.enabled().test();
+
+        command.execute("1");
+        enabled.assertValues(true);
+        command.execute("2");
+        enabled.assertValues(true, false);
+        command.execute("3")
+                .test()
+                .assertError(IllegalStateException.class);
+
+        executions.get("1").onComplete();
+        enabled.assertValues(true, false, true);
+        command.errors()
+                .test()
+                .assertNoValues();
+    }
+
+    @Test
+    public void maxConcurrency_limitsRunningExecutions() {
+        Map<String, PublishSubject<String>> executions = new HashMap<>();
+        RxCommand<String> command = RxCommand.builder((Object o) -> subject(executions, (String) o))
+                .maxConcurrency(2)
+                .build();
+        TestObserver<Boolean> enabled = command.enabled().test();
+
+        command.execute("1");
+        command.execute("2");
+        enabled.assertValues(true, false);
+        command.execute("3")
+                .test()
+                .assertError(IllegalStateException.class);
+        assertEquals(2, executions.size());
+
+        executions.get("2").onComplete();
+        enabled.assertValues(true, false, true);
+        command.execute("3")
+                .test()
+                .assertNoErrors();
+        assertEquals(3, executions.size());
+    }
+
+    @Test
+    public void singleFlight_equalInputsShareExecution() {
+        AtomicInteger calls = new AtomicInteger();
+        PublishSubject<String> subject = PublishSubject.create();
+        RxCommand<String> command = RxCommand.builder((Object o) -> {
+            calls.incrementAndGet();
+            return subject;
+        })
+                .allowsConcurrentExecution(true)
+                .singleFlight(true)
+                .build();
+        TestObserver<Observable<String>> executions = command.executionObservables().test();
+        TestObserver<Boolean> executing = command.executing().test();
+
+        TestObserver<String> first = command.execute("x").test();
+        TestObserver<String> second = command.execute("x").test();
+        command.execute("y");
+
+        assertEquals(2, calls.get());
+        executions.assertValueCount(2);
+
+        subject.onNext("v");
+        subject.onComplete();
+        first.assertValue("v").assertComplete();
+        second.assertValue("v").assertComplete();
+        executing.assertValues(false, true, false);
+
+        command.execute("x");
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void singleFlight_busyCommandRejectsEqualInput() {
+        PublishSubject<String> subject = PublishSubject.create();
+        RxCommand<String> command = RxCommand.builder((Object o) -> subject)
+                .singleFlight(true)
+                .build();
+
+        command.execute("x");
+        command.execute("x")
+                .test()
+                .assertError(IllegalStateException.class);
+    }
+
+    @Test
+    public void cancel_disposesExecutionAndReenables() {
+        Map<String, PublishSubject<String>> executions = new HashMap<>();
+        RxCommand<String> command = RxCommand.builder((Object o) -> subject(executions, (String) o)).build();
+        TestObserver<Boolean> executing = command.executing().test();
+        TestObserver<Boolean> enabled = command.enabled().test();
+
+        TestObserver<String> observer = command.execute("1").test();
+        assertTrue(executions.get("1").hasObservers());
+
+        command.cancel();
+        assertFalse(executions.get("1").hasObservers());
+        executing.assertValues(false, true, false);
+        enabled.assertValues(true, false, true);
+        observer.assertNoValues().assertComplete();
+
+        command.execute("2");
+        assertTrue(executions.get("2").hasObservers());
+    }
+
+    @Test
+    public void submit_handleCancelsItsOwnExecution() {
+        Map<String, PublishSubject<String>> executions = new HashMap<>();
+        RxCommand<String> command = RxCommand.builder((Object o) -> subject(executions, (String) o))
+                .maxConcurrency(2)
+                .build();
+        TestObserver<Boolean> executing = command.executing().test();
+
+        ExecutionHandle<String> first = command.submit("1");
+        ExecutionHandle<String> second = command.submit("2");
+        TestObserver<String> observer = second.observable().test();
+
+        first.dispose();
+        assertTrue(first.isDisposed());
+        assertFalse(executions.get("1").hasObservers());
+        assertTrue(executions.get("2").hasObservers());
+        executing.assertValues(false, true);
+
+        executions.get("2").onNext("b");
+        executions.get("2").onComplete();
+        observer.assertValue("b").assertComplete();
+        executing.assertValues(false, true, false);
+
+        // disposing after termination does nothing
+        second.dispose();
+        executing.assertValues(false, true, false);
+    }
+
+    @Test
+    public void submit_joinedExecutionCancelledOnceAllHandlesDisposed() {
+        Map<String, PublishSubject<String>> executions = new HashMap<>();
+        RxCommand<String> command = RxCommand.builder((Object o) -> subject(executions, (String) o))
+                .allowsConcurrentExecution(true)
+                .singleFlight(true)
+                .build();
+        TestObserver<Boolean> executing = command.executing().test();
+
+        ExecutionHandle<String> first = command.submit("x");
+        ExecutionHandle<String> joined = command.submit("x");
+        TestObserver<String> observer = joined.observable().test();
+
+        first.dispose();
+        assertTrue(executions.get("x").hasObservers());
+        executing.assertValues(false, true);
+
+        joined.dispose();
+        assertFalse(executions.get("x").hasObservers());
+        observer.assertNoValues().assertComplete();
+        executing.assertValues(false, true, false);
+    }
+
+    @Test
+    public void submit_handleDropsQueuedCall() {
+        Map<String, PublishSubject<String>> executions = new HashMap<>();
+        RxCommand<String> command = RxCommand.builder((Object o) -> subject(executions, (String) o))
+                .queue(2, QueueOverflow.REJECT)
+                .build();
+
+        command.submit("1");
+        ExecutionHandle<String> queued = command.submit("2");
+        TestObserver<String> observer = queued.observable().test();
+
+        queued.dispose();
+        observer.assertNoValues().assertComplete();
+
+        executions.get("1").onComplete();
+        assertFalse(executions.containsKey("2"));
+    }
+
+    @Test
+    public void cancelAll_releasesRunningAndQueuedCalls() {
+        Map<String, PublishSubject<String>> executions = new HashMap<>();
+        RxCommand<String> command = RxCommand.builder((Object o) -> subject(executions, (String) o))
+                .maxConcurrency(2)
+                .queue(1, QueueOverflow.REJECT)
+                .build();
+        TestObserver<Boolean> executing = command.executing().test();
+        TestObserver<Boolean> enabled = command.enabled().test();
+
+        command.execute("1");
+        command.execute("2");
+        TestObserver<String> queued = command.execute("3").test();
+        enabled.assertValues(true, false);
+
+        command.cancelAll();
+        assertFalse(executions.get("1").hasObservers());
+        assertFalse(executions.get("2").hasObservers());
+        assertFalse(executions.containsKey("3"));
+        queued.assertNoValues().assertComplete();
+        executing.assertValues(false, true, false);
+        enabled.assertValues(true, false, true);
+    }
+
+    @Test
+    public void cancel_beforeSubscriptionNeverSubscribesUpstream() {
+        TestScheduler scheduler = new TestScheduler();
+        AtomicInteger subscriptions = new AtomicInteger();
+        RxCommand<String> command = RxCommand.builder((Object o) -> Observable.just("v")
+                .doOnSubscribe(d -> subscriptions.incrementAndGet()))
+                .workScheduler(scheduler)
+                .build();
+        TestObserver<Boolean> executing = command.executing().test();
+
+        ExecutionHandle<String> handle = command.submit(null);
+        TestObserver<String> observer = handle.observable().test();
+        handle.dispose();
+        scheduler.triggerActions();
+
+        assertEquals(0, subscriptions.get());
+        observer.assertNoValues().assertComplete();
+        executing.assertValues(false, true, false);
+    }
+
+    @Test
+    public void cancel_completesCommandComposingTheExecution() {
+        PublishSubject<String> countdown = PublishSubject.create();
+        RxCommand<String> inner = RxCommand.create(o -> countdown);
+        RxCommand<String> outer = RxCommand.create(o -> Observable.concat(Observable.just("sent"), inner.execute(null)));
+        TestObserver<Boolean> executing = outer.executing().test();
+        TestObserver<Boolean> enabled = outer.enabled().test();
+
+        TestObserver<String> observer = outer.execute(null).test();
+        countdown.onNext("3");
+        inner.cancel();
+
+        observer.assertValues("sent", "3").assertComplete();
+        executing.assertValues(false, true, false);
+        enabled.assertValues(true, false, true);
+    }
+
+    @Test
+    public void executeAll_runsInputsAsOneExecution() {
+        Map<String, PublishSubject<String>> executions = new HashMap<>();
+        RxCommand<String> command = RxCommand.builder((Object o) -> subject(executions, (String) o)).build();
+        TestObserver<Boolean> executing = command.executing().test();
+        TestObserver<Observable<String>> executionObservables = command.executionObservables().test();
+
+        TestObserver<String> observer = command.executeAll(Arrays.asList("1", "2", "3"), 2).test();
+        assertEquals(2, executions.size());
+
+        executions.get("2").onNext("b");
+        executions.get("2").onComplete();
+        assertEquals(3, executions.size());
+        executions.get("3").onNext("c");
+        executions.get("3").onComplete();
+        executions.get("1").onNext("a");
+        executions.get("1").onComplete();
+
+        observer.assertValues("b", "c", "a").assertComplete();
+        executing.assertValues(false, true, false);
+        executionObservables.assertValueCount(1);
+    }
+
+    @Test
+    public void executeAll_orderedSendsValuesInInputOrder() {
+        Map<String, PublishSubject<String>> executions = new HashMap<>();
+        RxCommand<String> command = RxCommand.builder((Object o) -> subject(executions, (String) o)).build();
+
+        TestObserver<String> observer = command.executeAll(Arrays.asList("1", "2"), 2, true).test();
+        executions.get("2").onNext("b");
+        executions.get("2").onComplete();
+        observer.assertNoValues();
+        executions.get("1").onNext("a");
+        executions.get("1").onComplete();
+
+        observer.assertValues("a", "b").assertComplete();
+    }
+
+    @Test
+    public void executeAll_aggregatesErrorsOnce() {
+        RxCommand<String> command = RxCommand.create(o -> "ok".equals(o)
+                ? Observable.just("v")
+                : Observable.<String>error(new IOException((String) o)));
+        TestObserver<Throwable> errors = command.errors().test();
+
+        TestObserver<String> observer = command.executeAll(Arrays.asList("x", "ok", "y"), 1).test();
+
+        observer.assertValue("v").assertError(CompositeException.class);
+        errors.assertValueCount(1);
+        assertEquals(2, ((CompositeException) errors.values().get(0)).size());
+    }
+
+    @Test
+    public void executeAll_passesNullInputsToFunc() {
+        RxCommand<String> command = RxCommand.create(o -> Observable.just(String.valueOf(o)));
+
+        command.executeAll(Arrays.asList("a", null, "b"), 1, true)
+                .test()
+                .assertValues("a", "null", "b")
+                .assertComplete();
+    }
+
+    @Test
+    public void executeAll_disabledWhileExecuting() {
+        PublishSubject<String> subject = PublishSubject.create();
+        RxCommand<String> command = RxCommand.create(o -> subject);
+
+        command.execute(null);
+        command.executeAll(Arrays.asList("1", "2"), 2)
+                .test()
+                .assertError(IllegalStateException.class);
+    }
+
+    private static Observable<String> subject(Map<String, PublishSubject<String>> executions, String input) {
+        PublishSubject<String> subject = PublishSubject.create();
+        executions.put(input, subject);
+        return subject;
+    }
+
 }
@@ -0,0 +1,114 @@
+package com.shundaojia.rxcommand;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.BehaviorSubject;
+
+import static org.junit.Assert.assertEquals;
+
+public class ThrottlePolicyTest {
+
+    @Rule
+    public final ImmediateSchedulersRule schedulers = new ImmediateSchedulersRule();
+
+    private final TestScheduler clock = new TestScheduler();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    public void throttleFirst_dropsCallsDuringWindow() {
+        RxCommand<Object> command = command(ThrottlePolicy.throttleFirst(300, TimeUnit.MILLISECONDS, clock));
+
+        command.execute("a").test().assertValue("a");
+        clock.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        command.execute("b").test().assertNoValues().assertComplete();
+        clock.advanceTimeBy(200, TimeUnit.MILLISECONDS);
+        command.execute("c").test().assertValue("c");
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void debounce_runsLastCallAfterQuietWindow() {
+        RxCommand<Object> command = command(ThrottlePolicy.debounce(300, TimeUnit.MILLISECONDS, clock));
+
+        TestObserver<Object> first = command.execute("a").test();
+        clock.advanceTimeBy(200, TimeUnit.MILLISECONDS);
+        TestObserver<Object> second = command.execute("b").test();
+        clock.advanceTimeBy(200, TimeUnit.MILLISECONDS);
+
+        first.assertNoValues().assertComplete();
+        second.assertNoValues().assertNotComplete();
+        assertEquals(0, calls.get());
+
+        clock.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        second.assertValue("b").assertComplete();
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void minInterval_delaysCallsMadeTooSoon() {
+        RxCommand<Object> command = command(ThrottlePolicy.minInterval(300, TimeUnit.MILLISECONDS, clock));
+
+        command.execute("a").test().assertValue("a");
+        clock.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        TestObserver<Object> second = command.execute("b").test();
+        TestObserver<Object> third = command.execute("c").test();
+
+        second.assertNoValues().assertComplete();
+        third.assertNoValues().assertNotComplete();
+
+        clock.advanceTimeBy(200, TimeUnit.MILLISECONDS);
+        third.assertValue("c");
+        assertEquals(2, calls.get());
+
+        clock.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+        command.execute("d").test().assertValue("d");
+    }
+
+    @Test
+    public void rejectedCall_doesNotUseUpInterval() {
+        BehaviorSubject<Boolean> enabled = BehaviorSubject.createDefault(true);
+        RxCommand<Object> command = RxCommand.builder((Object o) -> Observable.just(o))
+                .enabled(enabled)
+                .throttle(ThrottlePolicy.minInterval(300, TimeUnit.MILLISECONDS, clock))
+                .build();
+
+        command.execute("a").test().assertValue("a");
+        clock.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        TestObserver<Object> second = command.execute("b").test();
+        enabled.onNext(false);
+        clock.advanceTimeBy(200, TimeUnit.MILLISECONDS);
+        second.assertError(IllegalStateException.class);
+
+        enabled.onNext(true);
+        command.execute("c").test().assertValue("c");
+    }
+
+    @Test
+    public void disabledCommand_notThrottled() {
+        RxCommand<Object> command = RxCommand.builder((Object o) -> Observable.just(o))
+                .enabled(Observable.just(false))
+                .throttle(ThrottlePolicy.throttleFirst(300, TimeUnit.MILLISECONDS, clock))
+                .build();
+
+        command.execute("a").test().assertError(IllegalStateException.class);
+    }
+
+    private RxCommand<Object> command(ThrottlePolicy policy) {
+        return RxCommand.builder((Object o) -> {
+            calls.incrementAndGet();
+            return Observable.just(o);
+        })
+                .allowsConcurrentExecution(true)
+                .throttle(policy)
+                .build();
+    }
+}
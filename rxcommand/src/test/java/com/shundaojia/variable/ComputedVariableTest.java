@@ -0,0 +1,94 @@
+package com.shundaojia.variable;
+
+import com.shundaojia.rxcommand.ImmediateSchedulersRule;
+import com.shundaojia.rxcommand.RxCommand;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+
+import static org.junit.Assert.assertEquals;
+
+public class ComputedVariableTest {
+
+    @Rule
+    public final ImmediateSchedulersRule schedulers = new ImmediateSchedulersRule();
+
+    @Test
+    public void value_computedOncePerChange() {
+        AtomicInteger computations = new AtomicInteger();
+        IntVariable a = new IntVariable(1);
+        IntVariable b = new IntVariable(2);
+        ComputedVariable<Integer> sum = ComputedVariable.create(() -> {
+            computations.incrementAndGet();
+            return a.value() + b.value();
+        }, a.asObservable(), b.asObservable());
+
+        assertEquals(3, (int) sum.value());
+        assertEquals(3, (int) sum.value());
+        assertEquals(1, computations.get());
+
+        a.setValue(5);
+        assertEquals(1, computations.get());
+        assertEquals(7, (int) sum.value());
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    public void observers_shareResult() {
+        AtomicInteger computations = new AtomicInteger();
+        Variable<String> text = new Variable<>("");
+        ComputedVariable<Integer> length = ComputedVariable.create(() -> {
+            computations.incrementAndGet();
+            return text.value().length();
+        }, text.asObservable());
+
+        TestObserver<Integer> first = length.asObservable().test();
+        TestObserver<Integer> second = length.asObservable().test();
+        text.setValue("ab");
+        text.setValue("cd");
+
+        first.assertValues(0, 2);
+        second.assertValues(0, 2);
+        assertEquals(3, computations.get());
+    }
+
+    @Test
+    public void batch_computesOnceAfterAllDependencies() {
+        AtomicInteger computations = new AtomicInteger();
+        Variable<String> phone = new Variable<>("");
+        Variable<String> captcha = new Variable<>("");
+        ComputedVariable<Boolean> valid = ComputedVariable.create(() -> {
+            computations.incrementAndGet();
+            return phone.value().length() == 11 && captcha.value().length() == 6;
+        }, phone.asObservable(), captcha.asObservable());
+        TestObserver<Boolean> observer = valid.asObservable().test();
+
+        Variable.batch(() -> {
+            phone.setValue("13800000000");
+            captcha.setValue("123456");
+        });
+
+        observer.assertValues(false, true);
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    public void enablesCommand() {
+        Variable<String> input = new Variable<>("");
+        ComputedVariable<Boolean> valid = ComputedVariable.create(() -> !input.value().isEmpty(), input.asObservable());
+        RxCommand<String> command = RxCommand.create(valid.asObservable(), o -> Observable.just("done"));
+        TestObserver<Boolean> enabled = command.enabled().test();
+
+        input.setValue("a");
+        enabled.assertValues(false, true);
+
+        command.execute(null)
+                .test()
+                .assertValue("done");
+    }
+}
@@ -0,0 +1,87 @@
+package com.shundaojia.variable;
+
+import org.junit.Test;
+
+import io.reactivex.observers.TestObserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrimitiveVariableTest {
+
+    @Test
+    public void asObservable_sendsCurrentValueThenChanges() {
+        IntVariable variable = new IntVariable(1);
+        variable.setValue(2);
+
+        TestObserver<Integer> observer = variable.asObservable().test();
+        variable.setValue(3);
+        variable.setValue(3);
+        variable.setValue(4);
+
+        observer.assertValues(2, 3, 4);
+        assertEquals(4, variable.value());
+    }
+
+    @Test
+    public void writesWithoutObservers_notSent() {
+        IntVariable variable = new IntVariable(0);
+        TestObserver<Integer> first = variable.asObservable().test();
+        first.dispose();
+
+        variable.setValue(1);
+        variable.setValue(2);
+
+        first.assertValue(0);
+        variable.asObservable()
+                .test()
+                .assertValue(2);
+    }
+
+    @Test
+    public void intVariable_atomicUpdates() {
+        IntVariable variable = new IntVariable(1);
+        TestObserver<Integer> observer = variable.asObservable().test();
+
+        assertEquals(3, variable.addAndGet(2));
+        assertFalse(variable.compareAndSet(1, 5));
+        assertTrue(variable.compareAndSet(3, 5));
+
+        observer.assertValues(1, 3, 5);
+    }
+
+    @Test
+    public void longVariable_sendsValues() {
+        LongVariable variable = new LongVariable(1L);
+        TestObserver<Long> observer = variable.asObservable().test();
+
+        variable.addAndGet(1L);
+        variable.setValue(Long.MAX_VALUE);
+
+        observer.assertValues(1L, 2L, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void booleanVariable_sendsChangesOnly() {
+        BooleanVariable variable = new BooleanVariable(false);
+        TestObserver<Boolean> observer = variable.asObservable().test();
+
+        variable.setValue(false);
+        variable.setValue(true);
+        variable.setValue(true);
+
+        observer.assertValues(false, true);
+    }
+
+    @Test
+    public void doubleVariable_comparesBits() {
+        DoubleVariable variable = new DoubleVariable(Double.NaN);
+        TestObserver<Double> observer = variable.asObservable().test();
+
+        variable.setValue(Double.NaN);
+        variable.setValue(0.5);
+
+        observer.assertValues(Double.NaN, 0.5);
+    }
+}
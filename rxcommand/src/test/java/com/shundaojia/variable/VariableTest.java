@@ -0,0 +1,148 @@
+package com.shundaojia.variable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VariableTest {
+
+    @Test
+    public void setValue_sendsValue() {
+        Variable<String> variable = new Variable<>("a");
+        TestObserver<String> observer = variable.asObservable().test();
+
+        variable.setValue("b");
+
+        assertEquals("b", variable.value());
+        observer.assertValues("a", "b");
+    }
+
+    @Test
+    public void compareAndSet_onlySetsExpectedValue() {
+        String a = "a";
+        Variable<String> variable = new Variable<>(a);
+        TestObserver<String> observer = variable.asObservable().test();
+
+        assertFalse(variable.compareAndSet("b", "c"));
+        assertTrue(variable.compareAndSet(a, "c"));
+
+        assertEquals("c", variable.value());
+        observer.assertValues("a", "c");
+    }
+
+    @Test
+    public void updates_returnPreviousOrNewValue() {
+        Variable<Integer> variable = new Variable<>(1);
+
+        assertEquals(1, (int) variable.getAndUpdate(i -> i + 1));
+        assertEquals(3, (int) variable.updateAndGet(i -> i + 1));
+        assertEquals(3, (int) variable.value());
+    }
+
+    @Test
+    public void concurrentUpdates_sentInWriteOrder() throws InterruptedException {
+        final int threads = 4;
+        final int updates = 10000;
+        Variable<Integer> variable = new Variable<>(0);
+        List<Integer> values = new ArrayList<>();
+        variable.asObservable().subscribe(values::add);
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < updates; i++) {
+                    variable.updateAndGet(value -> value + 1);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        assertEquals(threads * updates, (int) variable.value());
+        assertEquals(threads * updates + 1, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(i, (int) values.get(i));
+        }
+    }
+
+    @Test
+    public void asObservable_sendsInitialValue() {
+        new Variable<>("a").asObservable()
+                .test()
+                .assertValue("a");
+    }
+
+    @Test
+    public void distinct_ignoresEqualValues() {
+        Variable<String> variable = Variable.distinct("a");
+        TestObserver<String> observer = variable.asObservable().test();
+
+        variable.setValue(new String("a"));
+        variable.setValue("b");
+        variable.updateAndGet(value -> "b");
+        variable.setValue("a");
+
+        observer.assertValues("a", "b", "a");
+    }
+
+    @Test
+    public void distinct_usesComparer() {
+        Variable<String> variable = Variable.distinct("a", String::equalsIgnoreCase);
+        TestObserver<String> observer = variable.asObservable().test();
+
+        variable.setValue("A");
+        variable.setValue("b");
+
+        assertEquals("b", variable.value());
+        observer.assertValues("a", "b");
+    }
+
+    @Test
+    public void batch_sendsLatestValueOncePerVariable() {
+        Variable<String> first = new Variable<>("a");
+        IntVariable second = new IntVariable(0);
+        TestObserver<String> firstObserver = first.asObservable().test();
+        TestObserver<Integer> secondObserver = second.asObservable().test();
+
+        Variable.batch(() -> {
+            first.setValue("b");
+            second.setValue(1);
+            Variable.batch(() -> first.setValue("c"));
+            second.setValue(2);
+
+            assertEquals("c", first.value());
+            firstObserver.assertValues("a");
+            secondObserver.assertValues(0);
+        });
+
+        firstObserver.assertValues("a", "c");
+        secondObserver.assertValues(0, 2);
+    }
+
+    @Test
+    public void batch_derivedStateSettlesOnce() {
+        Variable<String> phone = new Variable<>("");
+        Variable<String> captcha = new Variable<>("");
+        TestObserver<Boolean> valid = Observable
+                .merge(phone.asObservable(), captcha.asObservable())
+                .map(changed -> phone.value().length() == 11 && captcha.value().length() == 6)
+                .distinctUntilChanged()
+                .test();
+
+        Variable.batch(() -> {
+            phone.setValue("13800000000");
+            captcha.setValue("123456");
+        });
+
+        valid.assertValues(false, true);
+    }
+}
@@ -50,18 +50,20 @@ public class LoginActivity extends AppCompatActivity {
         // bind view model
         RxTextView
                 .textChanges(phoneNumberEditText)
+                // the text view sends its mutable text, keep a snapshot
+                .map(CharSequence::toString)
                 .compose(Live.bindLifecycle(this))
                 .subscribe(viewModel.phoneNumber::setValue);
 
         RxTextView
                 .textChanges(captchaEditText)
+                // the text view sends its mutable text, keep a snapshot
+                .map(CharSequence::toString)
                 .compose(Live.bindLifecycle(this))
                 .subscribe(viewModel.captcha::setValue);
 
-        RxCommandBinder
-                .bind(captchaButton, viewModel.captchaCommand(), Live.bindLifecycle(this));
-        RxCommandBinder
-                .bind(loginButton, viewModel.loginCommand(), Live.bindLifecycle(this));
+        RxCommandBinder.bind(this, viewModel.captchaCommand(), captchaButton);
+        RxCommandBinder.bind(this, viewModel.loginCommand(), loginButton);
 
         // captcha
         viewModel.captchaCommand()
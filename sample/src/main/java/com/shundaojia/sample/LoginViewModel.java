@@ -3,6 +3,7 @@ package com.shundaojia.sample;
 import android.arch.lifecycle.ViewModel;
 
 import com.shundaojia.rxcommand.RxCommand;
+import com.shundaojia.variable.ComputedVariable;
 import com.shundaojia.variable.Variable;
 
 import java.util.concurrent.TimeUnit;
@@ -20,29 +21,33 @@ public class LoginViewModel extends ViewModel{
     private RxCommand<Boolean> loginCommand;
     private RxCommand<String> captchaCommand;
 
-    private Observable<Boolean> captchaValid;
-    private Observable<Boolean> phoneNumberValid;
+    private ComputedVariable<Boolean> phoneNumberValid;
+    private ComputedVariable<Boolean> loginInputValid;
 
-    public final Variable<CharSequence> phoneNumber;
-    public final Variable<CharSequence> captcha;
+    public final Variable<String> phoneNumber;
+    public final Variable<String> captcha;
 
     public LoginViewModel() {
-        phoneNumber = new Variable<>("");
-        captcha = new Variable<>("");
-
-        captchaValid = captcha.asObservable().map(s -> s.toString().trim().length() == 6);
-        phoneNumberValid = phoneNumber.asObservable().map(s -> s.toString().trim().length() == 11);
+        phoneNumber = Variable.distinct("");
+        captcha = Variable.distinct("");
+
+        phoneNumberValid = ComputedVariable.create(
+                () -> phoneNumber.value().trim().length() == 11,
+                phoneNumber.asObservable());
+        loginInputValid = ComputedVariable.create(
+                () -> phoneNumberValid.value() && captcha.value().trim().length() == 6,
+                phoneNumberValid.asObservable(), captcha.asObservable());
     }
 
     public RxCommand<String> captchaCommand() {
         if (captchaCommand == null) {
             Observable<Boolean> enabled = Observable.combineLatest(
-                    phoneNumberValid,
+                    phoneNumberValid.asObservable(),
                     countdownCommand().executing(),
                     (valid, executing) -> valid && !executing);
 
             captchaCommand = RxCommand.create(enabled, o -> {
-                String phone = phoneNumber.value().toString();
+                String phone = phoneNumber.value();
                 Timber.i("fetch captcha with %s", phone);
                 Observable<String> fetchCode =  fetchCaptcha(phone);
                 Observable<String> countdown =  Observable.defer(() -> countdownCommand().execute(null).ignoreElements().toObservable()) ;
@@ -64,14 +69,9 @@ public class LoginViewModel extends ViewModel{
 
     public RxCommand<Boolean> loginCommand() {
         if (loginCommand == null) {
-            Observable<Boolean> loginInputValid = Observable.combineLatest(
-                    captchaValid,
-                    phoneNumberValid,
-                    (captchaValid, phoneValid) -> captchaValid && phoneValid);
-
-            loginCommand = RxCommand.create(loginInputValid, o -> {
-                String phone = this.phoneNumber.value().toString();
-                String captcha = this.captcha.value().toString();
+            loginCommand = RxCommand.create(loginInputValid.asObservable(), o -> {
+                String phone = this.phoneNumber.value();
+                String captcha = this.captcha.value();
                 return login(phone, captcha);
             });
         }